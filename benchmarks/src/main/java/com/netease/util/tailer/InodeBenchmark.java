@@ -0,0 +1,94 @@
+package com.netease.util.tailer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.netease.util.InodeUtil;
+
+/**
+ * Cost of telling the inode of a file, as done on every poll to detect
+ * rotation: the JNI call of {@link InodeUtil#getInode(String)}, the NIO
+ * attribute read of {@link InodeProbe}, and the probes of an open file which
+ * also tell its size, natively or through NIO.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InodeBenchmark {
+    private File file;
+
+    private String path;
+
+    private RandomAccessFile reader;
+
+    private InodeProbe nioProbe;
+
+    private InodeProbe nativeProbe;
+
+    @Setup
+    public void setup() throws IOException {
+        if (!InodeUtil.isAvailable()) {
+            throw new IllegalStateException("the native library is not loaded");
+        }
+
+        file = File.createTempFile("inode", ".log");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("line\n".getBytes("UTF-8"));
+        out.close();
+        path = file.getAbsolutePath();
+        reader = new RandomAccessFile(file, "r");
+        nioProbe = new InodeProbe(file, false);
+        nativeProbe = new InodeProbe(file, true);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public long nativeGetInode() {
+        return InodeUtil.getInode(path);
+    }
+
+    @Benchmark
+    public long nioGetInode() {
+        return nioProbe.getInode();
+    }
+
+    @Benchmark
+    public long nioProbe() throws IOException {
+        return nioProbe.probe(reader) + nioProbe.getSize();
+    }
+
+    @Benchmark
+    public long nativeProbe() throws IOException {
+        return nativeProbe.probe(reader) + nativeProbe.getSize();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(InodeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
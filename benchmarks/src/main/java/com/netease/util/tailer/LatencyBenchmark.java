@@ -0,0 +1,117 @@
+package com.netease.util.tailer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time from the append of a line to the call of the listener with it, for a
+ * tailer running on its own thread, by the way it notices changes and its
+ * poll delay.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LatencyBenchmark {
+    private static final byte[] LINE = "2013-01-01 00:00:00 INFO latency\n".getBytes();
+
+    @Param({ "POLL", "INOTIFY", "WATCH_SERVICE" })
+    private TailerConfig.ChangeDetection changeDetection;
+
+    @Param({ "10" })
+    private long delayMillis;
+
+    private File file;
+
+    private FileOutputStream out;
+
+    private Tailer tailer;
+
+    private Thread thread;
+
+    private final LatestListener listener = new LatestListener();
+
+    private long appended;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("latency", ".log");
+        out = new FileOutputStream(file, true);
+
+        TailerConfig config = new TailerConfig();
+        config.setChangeDetection(changeDetection);
+        config.setDelayMillis(delayMillis);
+        tailer = new Tailer(file, listener, 0, config);
+        thread = new Thread(tailer, "latency-tailer");
+        thread.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        tailer.stop();
+        thread.join();
+        out.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public long appendToCallback() throws IOException {
+        out.write(LINE);
+        appended++;
+        while (listener.count < appended) {
+            Thread.yield();
+        }
+        return listener.count;
+    }
+
+    /**
+     * Listener which counts the delivered lines.
+     */
+    static class LatestListener implements TailerListener {
+        volatile long count;
+
+        public void init(Tailer tailer) {
+        }
+
+        public void stop() {
+        }
+
+        public void fileNotFound() {
+        }
+
+        public void fileRotated() {
+        }
+
+        public void handle(String line, long position, long lastModified) {
+            // single writer
+            count++;
+        }
+
+        public void handle(Exception ex) {
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LatencyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package com.netease.util.tailer;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the decoding of lines by {@link LineDecoder} with the creation of a
+ * string per line, the charset being looked up by name or not.
+ * <p>
+ * The lines are packed in a block as they are in the read buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineDecoderBenchmark {
+    private static final int LINES = 1000;
+
+    @Param({ "UTF-8", "GBK" })
+    private String charsetName;
+
+    /**
+     * Whether the lines hold non-ASCII characters.
+     */
+    @Param({ "false", "true" })
+    private boolean nonAscii;
+
+    @Param({ "100" })
+    private int lineLength;
+
+    private Charset charset;
+
+    private LineDecoder decoder;
+
+    private byte[] block;
+
+    private int[] offsets;
+
+    @Setup
+    public void setup() {
+        charset = Charset.forName(charsetName);
+        decoder = new LineDecoder(charset);
+
+        StringBuilder content = new StringBuilder();
+        offsets = new int[LINES + 1];
+        for (int i = 0; i < LINES; i++) {
+            StringBuilder line = new StringBuilder("2013-01-01 00:00:00 INFO line ").append(i).append(' ');
+            while (line.length() < lineLength) {
+                line.append(nonAscii && line.length() % 10 == 0 ? '\u65e5' : 'x');
+            }
+            content.append(line);
+        }
+
+        // offsets in the encoded block
+        int position = 0;
+        int lineStart = 0;
+        String text = content.toString();
+        for (int i = 0; i < LINES; i++) {
+            offsets[i] = position;
+            String line = text.substring(lineStart, lineStart + lineLength);
+            position += line.getBytes(charset).length;
+            lineStart += lineLength;
+        }
+        offsets[LINES] = position;
+        block = text.getBytes(charset);
+    }
+
+    /**
+     * The former code path, looking up the charset by name for every line.
+     */
+    @Benchmark
+    public void stringByName(Blackhole blackhole) throws UnsupportedEncodingException {
+        for (int i = 0; i < LINES; i++) {
+            blackhole.consume(new String(block, offsets[i], offsets[i + 1] - offsets[i], charsetName));
+        }
+    }
+
+    @Benchmark
+    public void stringByCharset(Blackhole blackhole) {
+        for (int i = 0; i < LINES; i++) {
+            blackhole.consume(new String(block, offsets[i], offsets[i + 1] - offsets[i], charset));
+        }
+    }
+
+    @Benchmark
+    public void lineDecoder(Blackhole blackhole) {
+        for (int i = 0; i < LINES; i++) {
+            blackhole.consume(decoder.decode(block, offsets[i], offsets[i + 1] - offsets[i]));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LineDecoderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
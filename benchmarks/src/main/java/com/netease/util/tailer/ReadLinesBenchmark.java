@@ -0,0 +1,164 @@
+package com.netease.util.tailer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of {@link Tailer#readLines(RandomAccessFile)} reading a file
+ * from the page cache, by line length and buffer size, reported as reads of
+ * the whole file per second and as lines and bytes per second.
+ * <p>
+ * The listener either takes the decoded lines, or the raw bytes as a
+ * {@link ByteTailerListener}, to tell the cost of decoding from the cost of
+ * reading and splitting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadLinesBenchmark {
+    /**
+     * Size of the read file.
+     */
+    private static final int FILE_SIZE = 16 * 1024 * 1024;
+
+    @Param({ "64", "256", "1024" })
+    private int lineLength;
+
+    @Param({ "4096", "65536", "1048576" })
+    private int bufSize;
+
+    @Param({ "true", "false" })
+    private boolean decode;
+
+    private File file;
+
+    private RandomAccessFile reader;
+
+    private Tailer tailer;
+
+    private long lines;
+
+    /**
+     * Lines and bytes read, reported per second.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long lines;
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            lines = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("readlines", ".log");
+        byte[] line = new byte[lineLength];
+        for (int i = 0; i < line.length - 1; i++) {
+            line[i] = (byte) ('a' + i % 26);
+        }
+        line[line.length - 1] = '\n';
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        try {
+            for (int written = 0; written + lineLength <= FILE_SIZE; written += lineLength) {
+                out.write(line);
+                lines++;
+            }
+        } finally {
+            out.close();
+        }
+
+        TailerConfig config = new TailerConfig();
+        config.setBufSize(bufSize);
+        TailerListener listener = decode ? new CountingListener() : new CountingByteListener();
+        tailer = new Tailer(file, listener, 0, config);
+        reader = new RandomAccessFile(file, "r");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public long readLines(Counters counters) throws IOException {
+        reader.seek(0);
+        long position = tailer.readLines(reader);
+        counters.lines += lines;
+        counters.bytes += position;
+        return position;
+    }
+
+    /**
+     * Listener which only takes the decoded lines.
+     */
+    static class CountingListener implements TailerListener {
+        long count;
+
+        public void init(Tailer tailer) {
+        }
+
+        public void stop() {
+        }
+
+        public void fileNotFound() {
+        }
+
+        public void fileRotated() {
+        }
+
+        public void handle(String line, long position, long lastModified) {
+            count += line.length();
+        }
+
+        public void handle(Exception ex) {
+        }
+    }
+
+    /**
+     * Listener which only takes the raw lines.
+     */
+    static class CountingByteListener extends CountingListener implements ByteTailerListener {
+        public void handle(ByteBuffer line, long position, long lastModified) {
+            count += line.remaining();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ReadLinesBenchmark.class.getSimpleName()).build()).run();
+    }
+}
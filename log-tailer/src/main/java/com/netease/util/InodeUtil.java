@@ -0,0 +1,115 @@
+package com.netease.util;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Utility class for getting inode of a file.
+ * 
+ * @author jiaozhihui@corp.netease.com
+ */
+public class InodeUtil {
+    /**
+     * Number of values filled by {@link #statAll(byte[][], long[])} for each
+     * file: inode, size and last modified time.
+     */
+    public static final int STAT_FIELDS = 3;
+
+    /**
+     * Charset of the encoded paths.
+     */
+    private static final Charset PATH_CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * Whether the native library is loaded.
+     */
+    private static final boolean AVAILABLE;
+
+    private InodeUtil() {}
+    
+    static {
+        boolean available = false;
+        try {
+            NativeLoader.loadLibrary("inodeutil");
+            available = true;
+        } catch (IOException e) {
+            System.err.println("can't find library inodeutil");
+        } catch (UnsatisfiedLinkError e) {
+            System.err.println("can't load library inodeutil: " + e.getMessage());
+        }
+        AVAILABLE = available;
+    }
+
+    /**
+     * Return whether the native library is loaded, the native methods throw
+     * {@link UnsatisfiedLinkError} if it is not.
+     * 
+     * @return true if the native library is loaded
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Get inode of a file with the absolute path.
+     * 
+     * @param path
+     *            path of the file
+     * @return the inode of the file
+     */
+    public static native long getInode(String path);
+
+    /**
+     * Encode a path for {@link #statAll(byte[][], long[])}, the encoded path
+     * can be reused for every call.
+     * 
+     * @param path
+     *            path of the file
+     * @return the path as a null terminated byte array
+     */
+    public static byte[] encodePath(String path) {
+        byte[] bytes = path.getBytes(PATH_CHARSET);
+        byte[] encoded = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, encoded, 0, bytes.length);
+        return encoded;
+    }
+
+    /**
+     * Get inode, size and last modified time of many files in one call.
+     * <p>
+     * For the i-th file, <code>stats[i * STAT_FIELDS]</code> is set to the
+     * inode, <code>stats[i * STAT_FIELDS + 1]</code> to the size and
+     * <code>stats[i * STAT_FIELDS + 2]</code> to the last modified time in
+     * milliseconds; all of them are set to -1 if the file doesn't exist.
+     * 
+     * @param paths
+     *            paths of the files, encoded by {@link #encodePath(String)}
+     * @param stats
+     *            receives the values, at least
+     *            <code>paths.length * STAT_FIELDS</code> long
+     * @return number of the files which exist
+     */
+    public static native int statAll(byte[][] paths, long[] stats);
+
+    /**
+     * Get inode, size and last modified time of an open file and of a path in
+     * one call, e.g. to tell whether the path still names the open file.
+     * <p>
+     * <code>stats[0]</code> to <code>stats[STAT_FIELDS - 1]</code> are set to
+     * the values of the open file, and the next <code>STAT_FIELDS</code>
+     * values to the ones of the path, in the order of
+     * {@link #statAll(byte[][], long[])}; the values of the path are set to
+     * -1 if it doesn't exist.
+     * 
+     * @param fd
+     *            descriptor of the open file
+     * @param path
+     *            the path, encoded by {@link #encodePath(String)}
+     * @param stats
+     *            receives the values, at least <code>2 * STAT_FIELDS</code>
+     *            long
+     * @return false if the descriptor is not valid
+     */
+    public static native boolean probe(FileDescriptor fd, byte[] path, long[] stats);
+}
@@ -0,0 +1,142 @@
+package com.netease.util;
+
+/**
+ * Utility class for watching file system events with inotify, only available
+ * on Linux.
+ */
+public class InotifyUtil {
+    /**
+     * File was modified.
+     */
+    public static final int IN_MODIFY = 0x00000002;
+
+    /**
+     * File was moved out of the watched directory.
+     */
+    public static final int IN_MOVED_FROM = 0x00000040;
+
+    /**
+     * File was moved into the watched directory.
+     */
+    public static final int IN_MOVED_TO = 0x00000080;
+
+    /**
+     * File was created in the watched directory.
+     */
+    public static final int IN_CREATE = 0x00000100;
+
+    /**
+     * File was deleted from the watched directory.
+     */
+    public static final int IN_DELETE = 0x00000200;
+
+    /**
+     * The watched file or directory was deleted.
+     */
+    public static final int IN_DELETE_SELF = 0x00000400;
+
+    /**
+     * The watched file or directory was moved.
+     */
+    public static final int IN_MOVE_SELF = 0x00000800;
+
+    /**
+     * Whether inotify can be used.
+     */
+    private static final boolean AVAILABLE;
+
+    private InotifyUtil() {}
+
+    static {
+        boolean available = false;
+        try {
+            // the natives are part of the library loaded by InodeUtil
+            if (InodeUtil.isAvailable()) {
+                int fd = init();
+                if (fd >= 0) {
+                    close(fd);
+                    int wakeupFd = initWakeup();
+                    if (wakeupFd >= 0) {
+                        close(wakeupFd);
+                        available = true;
+                    }
+                }
+            }
+        } catch (UnsatisfiedLinkError e) {
+            // library built without inotify support
+        }
+        AVAILABLE = available;
+    }
+
+    /**
+     * Return whether inotify can be used.
+     * 
+     * @return true if inotify can be used
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Create an inotify instance.
+     * 
+     * @return the file descriptor of the instance, -1 if failed
+     */
+    public static native int init();
+
+    /**
+     * Create a descriptor which ends a wait of {@link #await} from another
+     * thread.
+     * 
+     * @return the file descriptor, -1 if failed
+     */
+    public static native int initWakeup();
+
+    /**
+     * End the current or the next wait on a wakeup descriptor.
+     * 
+     * @param wakeupFd
+     *            the wakeup descriptor
+     */
+    public static native void wakeup(int wakeupFd);
+
+    /**
+     * Add a watch to an inotify instance.
+     * 
+     * @param fd
+     *            the file descriptor of the instance
+     * @param path
+     *            path of the file or directory to watch
+     * @param mask
+     *            the events to watch
+     * @return the watch descriptor, -1 if failed
+     */
+    public static native int addWatch(int fd, String path, int mask);
+
+    /**
+     * Wait for events of an inotify instance, and consume all the queued
+     * events. The wait also ends, and consumes the wakeup, when the wakeup
+     * descriptor is woken.
+     * 
+     * @param fd
+     *            the file descriptor of the instance
+     * @param wakeupFd
+     *            the wakeup descriptor, -1 if there is none
+     * @param name
+     *            only events of the watched file itself and of the directory
+     *            entry with this name are reported, null to report all events
+     * @param timeoutMillis
+     *            the maximum time to wait in milliseconds
+     * @return the mask of the reported events, 0 if there are none before the
+     *         timeout or the wakeup, -1 if failed
+     */
+    public static native int await(int fd, int wakeupFd, String name, int timeoutMillis);
+
+    /**
+     * Close an inotify instance, or a wakeup descriptor.
+     * 
+     * @param fd
+     *            the file descriptor
+     */
+    public static native void close(int fd);
+}
@@ -0,0 +1,579 @@
+package com.netease.util.tailer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tailer listener which hands the events over to another listener running on
+ * a dedicated thread, so that a slow listener doesn't stop the reading of the
+ * file.
+ * <p>
+ * The events are passed through a bounded single producer, single consumer
+ * ring, without locks. When the ring is full, the tailer thread either waits
+ * for room, drops the oldest event, or spills the events to a file which is
+ * read back once the ring is drained, depending on the {@link Backpressure}
+ * policy. Events are delivered in order, except for the dropped ones.
+ * <p>
+ * The lines are decoded on the tailer thread, as the listener of the lines is
+ * a plain {@link TailerListener}. {@link TailerListener#init(Tailer)} is
+ * called on the tailer thread, all the other methods on the consumer thread,
+ * which ends after {@link TailerListener#stop()}.
+ */
+public class AsyncTailerListener implements TailerListener {
+    /**
+     * What the tailer thread does when the ring is full.
+     */
+    public enum Backpressure {
+        /**
+         * Wait until the consumer makes room, reading stops meanwhile.
+         */
+        BLOCK,
+
+        /**
+         * Drop the oldest event of the ring.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Append the events to a spill file until the consumer catches up.
+         */
+        SPILL
+    }
+
+    private static final int LINE = 0;
+    private static final int NOT_FOUND = 1;
+    private static final int ROTATED = 2;
+    private static final int EXCEPTION = 3;
+    private static final int STOP = 4;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * Time the producer parks for while waiting for room.
+     */
+    private static final long BLOCK_PARK_NANOS = 50 * 1000;
+
+    /**
+     * An entry of the ring.
+     */
+    private static final class Slot {
+        private int type;
+        private String line;
+        private long position;
+        private long lastModified;
+        private Exception exception;
+    }
+
+    private final TailerListener listener;
+
+    private final Backpressure backpressure;
+
+    private final File spillDirectory;
+
+    private final Slot[] ring;
+
+    private final int mask;
+
+    /**
+     * Sequence of the next event to consume.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Sequence of the next event to publish.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Last value of the head seen by the producer.
+     */
+    private long headCache = 0;
+
+    private volatile Thread consumer;
+
+    private volatile boolean consumerWaiting = false;
+
+    /**
+     * Whether the events go to the spill file, until the consumer drains it.
+     */
+    private volatile boolean spilling = false;
+
+    /**
+     * Guards the spill file.
+     */
+    private final Object spillLock = new Object();
+
+    private File spillFile;
+
+    private DataOutputStream spillOut;
+
+    private DataInputStream spillIn;
+
+    private final ArrayDeque<Exception> spilledExceptions = new ArrayDeque<Exception>();
+
+    private long spillWritten = 0;
+
+    private long spillRead = 0;
+
+    private volatile long maxQueueDepth = 0;
+
+    private volatile long droppedCount = 0;
+
+    private volatile long blockedCount = 0;
+
+    private volatile long spilledCount = 0;
+
+    private volatile long deliveredCount = 0;
+
+    /**
+     * Creates the listener, waiting for room when the ring is full.
+     *
+     * @param listener
+     *            the listener receiving the events
+     * @param capacity
+     *            number of events the ring holds, rounded up to a power of
+     *            two
+     */
+    public AsyncTailerListener(TailerListener listener, int capacity) {
+        this(listener, capacity, Backpressure.BLOCK, null);
+    }
+
+    /**
+     * Creates the listener.
+     *
+     * @param listener
+     *            the listener receiving the events
+     * @param capacity
+     *            number of events the ring holds, rounded up to a power of
+     *            two
+     * @param backpressure
+     *            what to do when the ring is full
+     * @param spillDirectory
+     *            directory of the spill file with {@link Backpressure#SPILL},
+     *            null for the temporary directory
+     */
+    public AsyncTailerListener(TailerListener listener, int capacity, Backpressure backpressure, File spillDirectory) {
+        TailerConfig.checkPositive(capacity, "capacity");
+        if (capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity too large: " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.ring = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.listener = listener;
+        this.backpressure = backpressure;
+        this.spillDirectory = spillDirectory;
+    }
+
+    @Override
+    public void init(Tailer tailer) {
+        listener.init(tailer);
+
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                consume();
+            }
+        }, "tailer-async-listener-" + tailer.getFile().getName());
+        thread.setDaemon(true);
+        consumer = thread;
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        publish(STOP, null, 0, 0, null);
+    }
+
+    @Override
+    public void fileNotFound() {
+        publish(NOT_FOUND, null, 0, 0, null);
+    }
+
+    @Override
+    public void fileRotated() {
+        publish(ROTATED, null, 0, 0, null);
+    }
+
+    @Override
+    public void handle(String line, long position, long lastModified) {
+        publish(LINE, line, position, lastModified, null);
+    }
+
+    @Override
+    public void handle(Exception ex) {
+        publish(EXCEPTION, null, 0, 0, ex);
+    }
+
+    /**
+     * Waits for the consumer thread to deliver the stop event.
+     *
+     * @param timeoutMillis
+     *            the maximum time to wait, 0 to wait forever
+     * @return true if the consumer thread ended
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public boolean awaitStop(long timeoutMillis) throws InterruptedException {
+        Thread thread = consumer;
+        if (thread == null) {
+            return true;
+        }
+        thread.join(timeoutMillis);
+        return !thread.isAlive();
+    }
+
+    /**
+     * Return the number of events in the ring.
+     *
+     * @return the queue depth
+     */
+    public long getQueueDepth() {
+        return Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * Return the maximum number of events seen in the ring.
+     *
+     * @return the maximum queue depth
+     */
+    public long getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Return the number of events in the spill file.
+     *
+     * @return the spill depth
+     */
+    public long getSpillDepth() {
+        synchronized (spillLock) {
+            return spillWritten - spillRead;
+        }
+    }
+
+    /**
+     * Return the number of events dropped with
+     * {@link Backpressure#DROP_OLDEST}.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Return the number of times the tailer thread waited for room with
+     * {@link Backpressure#BLOCK}.
+     *
+     * @return the number of waits
+     */
+    public long getBlockedCount() {
+        return blockedCount;
+    }
+
+    /**
+     * Return the number of events written to the spill file with
+     * {@link Backpressure#SPILL}.
+     *
+     * @return the number of spilled events
+     */
+    public long getSpilledCount() {
+        return spilledCount;
+    }
+
+    /**
+     * Return the number of events delivered to the listener.
+     *
+     * @return the number of delivered events
+     */
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    private void publish(int type, String line, long position, long lastModified, Exception exception) {
+        if (spilling && spill(type, line, position, lastModified, exception)) {
+            return;
+        }
+
+        long t = tail.get();
+        if (t - headCache >= ring.length) {
+            headCache = head.get();
+            if (t - headCache >= ring.length && !makeRoom(t, type, line, position, lastModified, exception)) {
+                return;
+            }
+        }
+
+        Slot slot = ring[(int) t & mask];
+        slot.type = type;
+        slot.line = line;
+        slot.position = position;
+        slot.lastModified = lastModified;
+        slot.exception = exception;
+        // a full fence, so that a consumer about to park either sees the new
+        // tail or is seen waiting
+        tail.set(t + 1);
+
+        // single writer, plain updates are safe
+        long depth = t + 1 - headCache;
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+        if (consumerWaiting) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Make room for the event at the given sequence according to the
+     * backpressure policy.
+     *
+     * @return false if the event is spilled instead
+     */
+    private boolean makeRoom(long t, int type, String line, long position, long lastModified, Exception exception) {
+        switch (backpressure) {
+        case DROP_OLDEST:
+            while (true) {
+                long h = head.get();
+                if (t - h < ring.length) {
+                    headCache = h;
+                    return true;
+                }
+                // the consumer sees the head moved and discards the slot
+                if (head.compareAndSet(h, h + 1)) {
+                    droppedCount++;
+                    headCache = h + 1;
+                    return true;
+                }
+            }
+        case SPILL:
+            synchronized (spillLock) {
+                spilling = true;
+            }
+            if (spill(type, line, position, lastModified, exception)) {
+                return false;
+            }
+            // drained meanwhile
+            headCache = head.get();
+            return true;
+        default:
+            blockedCount++;
+            Thread thread = consumer;
+            while (t - (headCache = head.get()) >= ring.length) {
+                if (thread == null || !thread.isAlive()) {
+                    throw new IllegalStateException("consumer of " + listener + " is not running");
+                }
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Append the event to the spill file while spilling.
+     *
+     * @return false if the spill file is drained and the ring can be used
+     *         again
+     */
+    private boolean spill(int type, String line, long position, long lastModified, Exception exception) {
+        synchronized (spillLock) {
+            if (!spilling) {
+                return false;
+            }
+
+            try {
+                if (spillOut == null) {
+                    spillFile = File.createTempFile("tailer-spill", ".dat", spillDirectory);
+                    spillFile.deleteOnExit();
+                    spillOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile), 64 * 1024));
+                    spillIn = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile), 64 * 1024));
+                }
+
+                spillOut.writeByte(type);
+                spillOut.writeLong(position);
+                spillOut.writeLong(lastModified);
+                if (line != null) {
+                    byte[] bytes = line.getBytes(CHARSET);
+                    spillOut.writeInt(bytes.length);
+                    spillOut.write(bytes);
+                } else {
+                    spillOut.writeInt(-1);
+                }
+                if (exception != null) {
+                    spilledExceptions.add(exception);
+                }
+                spillWritten++;
+                spilledCount++;
+            } catch (IOException e) {
+                throw new IllegalStateException("can't spill events to " + spillFile, e);
+            }
+        }
+
+        if (consumerWaiting) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    private void consume() {
+        boolean dropping = backpressure == Backpressure.DROP_OLDEST;
+        while (true) {
+            long h = head.get();
+            if (h < tail.get()) {
+                Slot slot = ring[(int) h & mask];
+                int type = slot.type;
+                String line = slot.line;
+                long position = slot.position;
+                long lastModified = slot.lastModified;
+                Exception exception = slot.exception;
+
+                if (dropping) {
+                    if (!head.compareAndSet(h, h + 1)) {
+                        // dropped by the producer, which may have reused the
+                        // slot
+                        continue;
+                    }
+                } else {
+                    slot.line = null;
+                    slot.exception = null;
+                    head.lazySet(h + 1);
+                }
+
+                if (deliver(type, line, position, lastModified, exception)) {
+                    return;
+                }
+                continue;
+            }
+
+            if (spilling && consumeSpill()) {
+                return;
+            }
+
+            // parks until the producer publishes an event, checking again
+            // once seen waiting
+            consumerWaiting = true;
+            if (head.get() == tail.get() && !spilling) {
+                LockSupport.park(this);
+            }
+            consumerWaiting = false;
+        }
+    }
+
+    /**
+     * Deliver the events of the spill file, once the ring is drained.
+     *
+     * @return true if the stop event was delivered
+     */
+    private boolean consumeSpill() {
+        while (true) {
+            int type;
+            String line = null;
+            long position;
+            long lastModified;
+            Exception exception = null;
+
+            synchronized (spillLock) {
+                if (spillRead == spillWritten) {
+                    closeSpill();
+                    spilling = false;
+                    return false;
+                }
+
+                try {
+                    spillOut.flush();
+                    type = spillIn.readByte();
+                    position = spillIn.readLong();
+                    lastModified = spillIn.readLong();
+                    int length = spillIn.readInt();
+                    if (length >= 0) {
+                        byte[] bytes = new byte[length];
+                        spillIn.readFully(bytes);
+                        line = new String(bytes, CHARSET);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("can't read spilled events from " + spillFile, e);
+                }
+                if (type == EXCEPTION) {
+                    exception = spilledExceptions.poll();
+                }
+                spillRead++;
+            }
+
+            if (deliver(type, line, position, lastModified, exception)) {
+                synchronized (spillLock) {
+                    closeSpill();
+                }
+                return true;
+            }
+        }
+    }
+
+    private void closeSpill() {
+        try {
+            if (spillOut != null) {
+                spillOut.close();
+                spillIn.close();
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+        if (spillFile != null) {
+            spillFile.delete();
+        }
+        spillOut = null;
+        spillIn = null;
+        spillFile = null;
+        spillWritten = 0;
+        spillRead = 0;
+    }
+
+    /**
+     * Deliver an event to the listener.
+     *
+     * @return true if it is the stop event
+     */
+    private boolean deliver(int type, String line, long position, long lastModified, Exception exception) {
+        try {
+            switch (type) {
+            case LINE:
+                listener.handle(line, position, lastModified);
+                break;
+            case NOT_FOUND:
+                listener.fileNotFound();
+                break;
+            case ROTATED:
+                listener.fileRotated();
+                break;
+            case EXCEPTION:
+                listener.handle(exception);
+                break;
+            default:
+                listener.stop();
+                return true;
+            }
+        } catch (RuntimeException e) {
+            listener.handle(e);
+        } finally {
+            // single writer, plain increments are safe
+            deliveredCount++;
+        }
+        return false;
+    }
+}
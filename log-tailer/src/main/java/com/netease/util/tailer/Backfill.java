@@ -0,0 +1,444 @@
+package com.netease.util.tailer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Scans the existing content of a large file in parallel.
+ * <p>
+ * The region to backfill is split into chunks which end right after a line
+ * terminator, so that every line belongs to exactly one chunk. The chunks are
+ * read and split into lines, and filtered and decoded if needed, by the tasks
+ * of a {@link ForkJoinPool}, which may be shared by many backfills, and handed
+ * out either in file order, through a reorder buffer, or in the order they
+ * complete. At most two chunks per unit of parallelism are in flight, which
+ * bounds the memory used.
+ * <p>
+ * Instances are not thread safe, the chunks must be taken from one thread.
+ */
+final class Backfill {
+    /**
+     * Size of the windows read to find a line terminator at a chunk boundary.
+     */
+    private static final int BOUNDARY_WINDOW = 64 * 1024;
+
+    /**
+     * The lines of a chunk of the file.
+     */
+    static final class Chunk {
+        private final int index;
+        private final long start;
+        private byte[] data;
+        private int count;
+        private int[] lineStarts;
+        private int[] lineEnds;
+        private String[] lines;
+        private int filtered;
+        private long end;
+
+        Chunk(int index, long start) {
+            this.index = index;
+            this.start = start;
+        }
+
+        /**
+         * Return the position of the first line.
+         */
+        long getStart() {
+            return start;
+        }
+
+        /**
+         * Return the number of lines.
+         */
+        int size() {
+            return count;
+        }
+
+        /**
+         * Return the number of lines dropped by the filter.
+         */
+        int getFilteredCount() {
+            return filtered;
+        }
+
+        /**
+         * Return whether the lines are decoded.
+         */
+        boolean isDecoded() {
+            return lines != null;
+        }
+
+        /**
+         * Return the decoded line, null if lines are not decoded.
+         */
+        String getLine(int i) {
+            return lines == null ? null : lines[i];
+        }
+
+        /**
+         * Set the view to the bytes of the line, without its terminator.
+         */
+        void getBytes(int i, ByteBuffer view) {
+            view.clear();
+            view.position(lineStarts[i]);
+            view.limit(lineEnds[i]);
+        }
+
+        /**
+         * Return the file position right after the terminator of the line.
+         */
+        long getPosition(int i) {
+            return start + lineEnds[i] + 1 + (data[lineEnds[i]] == '\r' ? 1 : 0);
+        }
+
+        /**
+         * Return a view of the bytes of the chunk.
+         */
+        ByteBuffer newView() {
+            return ByteBuffer.wrap(data);
+        }
+
+        /**
+         * Return the number of bytes of the chunk.
+         */
+        int getLength() {
+            return data.length;
+        }
+    }
+
+    private final FileChannel channel;
+
+    private final long end;
+
+    private final int chunkSize;
+
+    private final int maxInFlight;
+
+    private final boolean ordered;
+
+    private final Charset charset;
+
+    private final LineFilter filter;
+
+    private final CompletionService<Chunk> completion;
+
+    /**
+     * Start positions of the submitted chunks, and the end of the last one.
+     */
+    private final List<Long> boundaries = new ArrayList<Long>();
+
+    /**
+     * Completed chunks waiting for the previous ones, in ordered mode.
+     */
+    private final Map<Integer, Chunk> reorder = new HashMap<Integer, Chunk>();
+
+    /**
+     * Whether each chunk is handed out, to compute the delivered position.
+     */
+    private final List<Boolean> handedOut = new ArrayList<Boolean>();
+
+    /**
+     * Index of the next chunk to hand out in ordered mode.
+     */
+    private int nextIndex = 0;
+
+    /**
+     * Index of the first chunk not handed out.
+     */
+    private int deliveredIndex = 0;
+
+    private int inFlight = 0;
+
+    /**
+     * Start of the next chunk to submit.
+     */
+    private long next;
+
+    /**
+     * End of the last complete line of the scanned chunks.
+     */
+    private long lastEnd;
+
+    /**
+     * Set once closed, so that the queued chunks are not scanned.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Creates the backfill of a region and submits the first chunks.
+     *
+     * @param channel
+     *            the file, which is only read with absolute positions
+     * @param start
+     *            start of the region, at the beginning of a line
+     * @param end
+     *            end of the region
+     * @param chunkSize
+     *            the approximate size of a chunk
+     * @param pool
+     *            the pool scanning the chunks
+     * @param parallelism
+     *            number of chunks scanned at once
+     * @param ordered
+     *            whether the chunks are handed out in file order
+     * @param charset
+     *            charset for decoding the lines, null to not decode them
+     * @param filter
+     *            filter of the decoded lines, null to keep all of them
+     * @throws IOException
+     *             if a chunk boundary can't be found
+     */
+    Backfill(FileChannel channel, long start, long end, int chunkSize, ForkJoinPool pool, int parallelism,
+            boolean ordered, Charset charset, LineFilter filter) throws IOException {
+        this.channel = channel;
+        this.end = end;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = 2 * parallelism;
+        this.ordered = ordered;
+        this.charset = charset;
+        this.filter = charset != null ? filter : null;
+        this.completion = new ExecutorCompletionService<Chunk>(pool);
+        this.next = start;
+        this.boundaries.add(start);
+
+        while (inFlight < maxInFlight && submit()) {
+            // fill the pipeline
+        }
+    }
+
+    /**
+     * Return the next chunk.
+     *
+     * @param wait
+     *            whether to wait for the chunk to be scanned
+     * @return the chunk, null if all the chunks are handed out, or if the next
+     *         one is not scanned yet and <code>wait</code> is false
+     * @throws IOException
+     *             if a chunk can't be read
+     */
+    Chunk next(boolean wait) throws IOException {
+        Chunk chunk;
+        if (ordered) {
+            chunk = reorder.remove(nextIndex);
+            while (chunk == null && inFlight > 0) {
+                Chunk completed = take(wait);
+                if (completed == null) {
+                    break;
+                }
+                if (completed.index == nextIndex) {
+                    chunk = completed;
+                } else {
+                    reorder.put(completed.index, completed);
+                }
+            }
+            if (chunk != null) {
+                nextIndex++;
+            }
+        } else {
+            chunk = inFlight > 0 ? take(wait) : null;
+        }
+
+        if (chunk != null) {
+            handedOut.set(chunk.index, Boolean.TRUE);
+            while (deliveredIndex < handedOut.size() && handedOut.get(deliveredIndex)) {
+                deliveredIndex++;
+            }
+            submit();
+        }
+        return chunk;
+    }
+
+    /**
+     * Return whether all the chunks are handed out.
+     *
+     * @return true if the backfill is complete
+     */
+    boolean isDone() {
+        return next >= end && inFlight == 0 && reorder.isEmpty();
+    }
+
+    /**
+     * Return the position where the backfilled content ends.
+     *
+     * @return the position
+     */
+    long getEnd() {
+        return end;
+    }
+
+    /**
+     * Return the position up to which all the chunks are handed out.
+     *
+     * @return the position
+     */
+    long getDeliveredPosition() {
+        if (deliveredIndex == handedOut.size() && next >= end) {
+            // the end of the last complete line
+            return deliveredIndex == 0 ? boundaries.get(0) : lastEnd;
+        }
+        return boundaries.get(deliveredIndex);
+    }
+
+    /**
+     * Drops the chunks which are not scanned yet, the pool is left running.
+     */
+    void close() {
+        closed = true;
+    }
+
+    /**
+     * Take a scanned chunk.
+     *
+     * @return the chunk, null if none is scanned and <code>wait</code> is
+     *         false
+     */
+    private Chunk take(boolean wait) throws IOException {
+        try {
+            Future<Chunk> future = wait ? completion.take() : completion.poll();
+            if (future == null) {
+                return null;
+            }
+            Chunk chunk = future.get();
+            inFlight--;
+            if (chunk.end > lastEnd) {
+                lastEnd = chunk.end;
+            }
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a chunk");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("can't scan chunk", cause);
+        }
+    }
+
+    /**
+     * Submit the next chunk.
+     *
+     * @return false if the region is covered
+     */
+    private boolean submit() throws IOException {
+        if (next >= end) {
+            return false;
+        }
+
+        final long start = next;
+        final long chunkEnd = start + chunkSize >= end ? end : boundaryAfter(start + chunkSize);
+        final Chunk chunk = new Chunk(handedOut.size(), start);
+        next = chunkEnd;
+        boundaries.add(chunkEnd);
+        handedOut.add(Boolean.FALSE);
+        inFlight++;
+
+        completion.submit(new Callable<Chunk>() {
+            public Chunk call() throws IOException {
+                if (!closed) {
+                    scan(chunk, (int) (chunkEnd - start));
+                }
+                return chunk;
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Return the position right after the first line terminator at or after
+     * the given position, or the end of the region.
+     */
+    private long boundaryAfter(long position) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(BOUNDARY_WINDOW);
+        long pos = position;
+        while (pos < end) {
+            window.clear();
+            window.limit((int) Math.min(BOUNDARY_WINDOW, end - pos));
+            int num = channel.read(window, pos);
+            if (num <= 0) {
+                break;
+            }
+            byte[] array = window.array();
+            for (int i = 0; i < num; i++) {
+                if (array[i] == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += num;
+        }
+        return end;
+    }
+
+    private void scan(Chunk chunk, int length) throws IOException {
+        byte[] data = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, chunk.start + buffer.position()) < 0) {
+                throw new IOException("file truncated during backfill");
+            }
+        }
+
+        int[] starts = new int[Math.max(16, length / 64)];
+        int[] ends = new int[starts.length];
+        int count = 0;
+        int filtered = 0;
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (data[i] == '\n') {
+                // strip the '\r' of "\r\n"
+                int lineEnd = i > lineStart && data[i - 1] == '\r' ? i - 1 : i;
+                if (filter != null && !filter.accept(data, lineStart, lineEnd - lineStart)) {
+                    filtered++;
+                    lineStart = i + 1;
+                    continue;
+                }
+
+                if (count == starts.length) {
+                    int[] grown = new int[count * 2];
+                    System.arraycopy(starts, 0, grown, 0, count);
+                    starts = grown;
+                    grown = new int[count * 2];
+                    System.arraycopy(ends, 0, grown, 0, count);
+                    ends = grown;
+                }
+                starts[count] = lineStart;
+                ends[count] = lineEnd;
+                count++;
+                lineStart = i + 1;
+            }
+        }
+
+        String[] lines = null;
+        if (charset != null) {
+            LineDecoder decoder = new LineDecoder(charset);
+            lines = new String[count];
+            for (int i = 0; i < count; i++) {
+                lines[i] = decoder.decode(data, starts[i], ends[i] - starts[i]);
+            }
+        }
+
+        chunk.data = data;
+        chunk.count = count;
+        chunk.lineStarts = starts;
+        chunk.lineEnds = ends;
+        chunk.lines = lines;
+        chunk.filtered = filtered;
+        // the trailing partial line is left to the live mode
+        chunk.end = chunk.start + lineStart;
+    }
+}
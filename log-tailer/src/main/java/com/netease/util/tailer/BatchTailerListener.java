@@ -0,0 +1,24 @@
+package com.netease.util.tailer;
+
+/**
+ * Tailer listener which receives the lines in batches.
+ * <p>
+ * All the complete lines found in one read cycle are passed at once, split
+ * into several batches if they exceed the limits set by
+ * {@link TailerConfig#setMaxBatchLines(int)} and
+ * {@link TailerConfig#setMaxBatchBytes(int)}. {@link #handle(String, long, long)}
+ * is never called for this kind of listener.
+ */
+public interface BatchTailerListener extends TailerListener {
+    /**
+     * Handles a batch of lines from a Tailer.
+     * <p>
+     * The batch is reused by the tailer, it is only valid during the call.
+     * <p>
+     * <b>Note:</b> this is called from the tailer thread.
+     * 
+     * @param batch
+     *            the lines.
+     */
+    void handle(LineBatch batch);
+}
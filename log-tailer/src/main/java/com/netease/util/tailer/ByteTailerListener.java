@@ -0,0 +1,30 @@
+package com.netease.util.tailer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tailer listener which receives the raw bytes of the lines.
+ * <p>
+ * The tailer doesn't decode the lines for this kind of listener, so
+ * {@link #handle(String, long, long)} is never called.
+ */
+public interface ByteTailerListener extends TailerListener {
+    /**
+     * Handles a line from a Tailer.
+     * <p>
+     * The line is a view of the tailer's buffer, between the position and the
+     * limit of the buffer, without the line terminator. It is only valid
+     * during the call, and must be copied if it is needed afterwards. The
+     * buffer must not be modified, but its position and limit may be changed.
+     * <p>
+     * <b>Note:</b> this is called from the tailer thread.
+     * 
+     * @param line
+     *            the bytes of the line.
+     * @param position
+     *            the read position.
+     * @param lastModified
+     *            last modified time.
+     */
+    void handle(ByteBuffer line, long position, long lastModified);
+}
@@ -0,0 +1,322 @@
+package com.netease.util.tailer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams through the rotated siblings of a file which were written after a
+ * checkpoint, e.g. <code>app.log.1.gz</code> and <code>app.log.1</code> of
+ * <code>app.log</code>, so that a tailer which fell behind can catch up before
+ * it follows the current file.
+ * <p>
+ * Only the names of rotated files are matched: the name of the file followed
+ * by <code>.</code> or <code>-</code> and a number or a date, e.g.
+ * <code>app.log-20130101</code> or <code>app.log.2013-01-01</code>, and
+ * optionally by <code>.gz</code>. The siblings are read in the order of their
+ * last modified time. The sibling identified as the checkpointed file is read
+ * from the checkpoint position, which is an offset in the uncompressed
+ * content: the first sibling, if it has the inode of the checkpoint, which is
+ * also the case of a compressed sibling whose catch-up was interrupted, or if
+ * it is compressed while the file is compressed as soon as it is rotated. Any
+ * other sibling is read from its start. Compressed siblings, whose names end
+ * with <code>.gz</code>, are inflated through a large buffer.
+ */
+final class CatchUpReader implements Closeable {
+    /**
+     * Size of the buffers for inflating and reading.
+     */
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * Length of the gzip trailer: the checksum and the size of the content.
+     */
+    private static final int GZIP_TRAILER = 8;
+
+    /**
+     * What follows the name of the file in the name of a rotated sibling.
+     */
+    private static final Pattern ROTATED_SUFFIX = Pattern
+            .compile("[.-](\\d+|\\d{4}-\\d{2}-\\d{2}([-_.T]\\d{2}(-?\\d{2}){0,2})?([.-]\\d+)?)(\\.gz)?");
+
+    private final File[] archives;
+
+    private final CheckpointStore.Checkpoint checkpoint;
+
+    /**
+     * Whether the first compressed sibling is the checkpointed file.
+     */
+    private final boolean compressOnRotate;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private int index = -1;
+
+    private InputStream in;
+
+    /**
+     * The file of the current sibling, under the inflater if it is
+     * compressed.
+     */
+    private FileInputStream raw;
+
+    /**
+     * Total length of the content of the siblings after the current one.
+     */
+    private long laterBytes;
+
+    /**
+     * Length of the content of the current sibling if it is compressed, -1
+     * if it is a plain file.
+     */
+    private long contentLength;
+
+    private long inode;
+
+    private long position;
+
+    private long lastModified;
+
+    private CatchUpReader(File[] archives, CheckpointStore.Checkpoint checkpoint, boolean compressOnRotate) {
+        this.archives = archives;
+        this.checkpoint = checkpoint;
+        this.compressOnRotate = compressOnRotate;
+    }
+
+    /**
+     * Creates the reader of the siblings written after the checkpoint, and
+     * opens the first one.
+     *
+     * @param file
+     *            the tailed file
+     * @param checkpoint
+     *            the checkpoint of the file, whose inode is not the one of the
+     *            current file
+     * @param compressOnRotate
+     *            whether the file is compressed as soon as it is rotated, so
+     *            that the first compressed sibling is the checkpointed file
+     * @return the reader, null if there is nothing to catch up
+     * @throws IOException
+     *             if the first sibling can't be opened
+     */
+    static CatchUpReader create(File file, final CheckpointStore.Checkpoint checkpoint, boolean compressOnRotate)
+            throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        final String name = file.getName();
+        File[] archives = directory.listFiles(new FileFilter() {
+            public boolean accept(File sibling) {
+                String siblingName = sibling.getName();
+                return siblingName.startsWith(name)
+                        && ROTATED_SUFFIX.matcher(siblingName.substring(name.length())).matches()
+                        && sibling.isFile() && sibling.lastModified() >= checkpoint.getLastModified();
+            }
+        });
+        if (archives == null || archives.length == 0) {
+            return null;
+        }
+
+        Arrays.sort(archives, new Comparator<File>() {
+            public int compare(File o1, File o2) {
+                long m1 = o1.lastModified();
+                long m2 = o2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+
+        CatchUpReader reader = new CatchUpReader(archives, checkpoint, compressOnRotate);
+        if (!reader.next()) {
+            return null;
+        }
+        return reader;
+    }
+
+    /**
+     * Open the next sibling.
+     *
+     * @return false if there is no sibling left
+     * @throws IOException
+     *             if the sibling can't be opened
+     */
+    boolean next() throws IOException {
+        close();
+
+        while (++index < archives.length) {
+            File archive = archives[index];
+            FileInputStream file;
+            InputStream opened;
+            try {
+                file = new FileInputStream(archive);
+            } catch (IOException e) {
+                // removed by the rotation meanwhile
+                continue;
+            }
+            try {
+                opened = archive.getName().endsWith(GZIP_SUFFIX) ? new GZIPInputStream(file, BUFFER_SIZE) : file;
+            } catch (IOException e) {
+                // not a gzip file
+                file.close();
+                continue;
+            }
+
+            in = opened;
+            raw = file;
+            laterBytes = 0;
+            for (int i = index + 1; i < archives.length; i++) {
+                laterBytes += contentLength(archives[i]);
+            }
+            contentLength = archive.getName().endsWith(GZIP_SUFFIX) ? contentLength(archive) : -1;
+            inode = new InodeProbe(archive, false).getInode();
+            lastModified = archive.lastModified();
+            position = 0;
+
+            // skip the delivered part of the file holding the checkpoint
+            boolean compressed = archive.getName().endsWith(GZIP_SUFFIX);
+            if (index == 0 && (inode == checkpoint.getInode() || (compressed && compressOnRotate))) {
+                skip(checkpoint.getPosition());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void skip(long count) throws IOException {
+        while (position < count) {
+            long skipped = in.skip(count - position);
+            if (skipped <= 0) {
+                break;
+            }
+            position += skipped;
+        }
+    }
+
+    /**
+     * Read the next bytes of the current sibling into the buffer.
+     *
+     * @return the buffer holding the bytes read, null at the end of the
+     *         sibling
+     * @throws IOException
+     *             if the sibling can't be read
+     */
+    ByteBuffer read() throws IOException {
+        byte[] array = buffer.array();
+        int num = in.read(array, 0, array.length);
+        if (num == -1) {
+            return null;
+        }
+
+        buffer.clear();
+        buffer.limit(num);
+        position += num;
+        return buffer;
+    }
+
+    /**
+     * Return the current sibling.
+     *
+     * @return the file
+     */
+    File getFile() {
+        return archives[index];
+    }
+
+    /**
+     * Return the inode of the current sibling.
+     *
+     * @return the inode
+     */
+    long getInode() {
+        return inode;
+    }
+
+    /**
+     * Return the position in the uncompressed content of the current sibling
+     * after the bytes read.
+     *
+     * @return the position
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * Return the number of bytes of the siblings left to read, counted in the
+     * uncompressed content like the positions, and estimated for the
+     * compressed siblings from their gzip trailer.
+     *
+     * @return number of bytes
+     * @throws IOException
+     *             if the current sibling can't be read
+     */
+    long getRemainingBytes() throws IOException {
+        long remaining = laterBytes;
+        if (raw != null) {
+            long length = contentLength >= 0 ? contentLength : raw.getChannel().size();
+            remaining += Math.max(0, length - position);
+        }
+        return remaining;
+    }
+
+    /**
+     * Return the length of the content of a sibling. The trailer of a gzip
+     * file only holds the length modulo 2^32, which is taken to wrap while it
+     * is well below the compressed length.
+     */
+    private static long contentLength(File archive) {
+        long length = archive.length();
+        if (!archive.getName().endsWith(GZIP_SUFFIX) || length < GZIP_TRAILER) {
+            return length;
+        }
+
+        long size;
+        try {
+            RandomAccessFile file = new RandomAccessFile(archive, "r");
+            try {
+                file.seek(length - 4);
+                // little endian
+                size = Integer.reverseBytes(file.readInt()) & 0xFFFFFFFFL;
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            // removed by the rotation meanwhile
+            return length;
+        }
+        // beyond the slight expansion of incompressible content by deflate
+        while (size < length - length / 64 - 1024) {
+            size += 1L << 32;
+        }
+        return size;
+    }
+
+    /**
+     * Return the last modified time of the current sibling.
+     *
+     * @return the last modified time
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+
+    public void close() {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            in = null;
+            raw = null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.netease.util.tailer;
+
+import java.io.File;
+
+import com.netease.util.InotifyUtil;
+
+/**
+ * Tells a tailer running on its own thread when to check the file again.
+ */
+abstract class ChangeNotifier {
+    /**
+     * Creates the notifier for the given file, falls back to polling if the
+     * requested change detection is not available.
+     * 
+     * @param file
+     *            the tailed file
+     * @param detection
+     *            the requested change detection
+     * @param safetyPollMillis
+     *            the maximum time to wait for an event
+     * @return the notifier
+     */
+    static ChangeNotifier create(File file, TailerConfig.ChangeDetection detection, long safetyPollMillis) {
+        ChangeNotifier notifier = null;
+        if (detection == TailerConfig.ChangeDetection.INOTIFY && InotifyUtil.isAvailable()) {
+            notifier = InotifyNotifier.create(file, safetyPollMillis);
+        } else if (detection == TailerConfig.ChangeDetection.WATCH_SERVICE) {
+            notifier = WatchServiceNotifier.create(file, safetyPollMillis);
+        }
+        return notifier != null ? notifier : new PollingNotifier();
+    }
+
+    /**
+     * Waits until the file may have changed.
+     * 
+     * @param delayMillis
+     *            the current delay between polls
+     */
+    abstract void await(long delayMillis);
+
+    /**
+     * Ends the current wait early if the notifier supports it, e.g. when the
+     * tailer is stopped.
+     */
+    void wakeup() {
+    }
+
+    /**
+     * Releases the resources of the notifier.
+     */
+    void close() {
+    }
+
+    /**
+     * Waits for the delay between polls.
+     */
+    static final class PollingNotifier extends ChangeNotifier {
+        @Override
+        void await(long delayMillis) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+    }
+}
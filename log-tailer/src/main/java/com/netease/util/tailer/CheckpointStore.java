@@ -0,0 +1,415 @@
+package com.netease.util.tailer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable store of the read positions of the tailed files.
+ * <p>
+ * Each checkpoint records the inode of a file and the position up to which
+ * its lines were delivered, so a tailer can resume where it stopped as long as
+ * the file was not replaced meanwhile. Checkpoints are kept in memory and
+ * appended to the store file in group commits: all the updates since the
+ * last commit are written at once, only the latest one of each file, and
+ * synced once, either every commit interval or after a number of updates.
+ * A removal is appended as a record with a negative position, which drops
+ * the checkpoint when the store is opened again.
+ * When the file has grown well beyond its live content, it is compacted by
+ * writing the live checkpoints to a temporary file which atomically replaces
+ * it.
+ * <p>
+ * Each record is protected by a checksum, a torn record at the end of the
+ * file after a crash is dropped when the store is opened.
+ * <p>
+ * The store is thread safe and can be shared by many tailers.
+ */
+public class CheckpointStore implements Closeable {
+    /**
+     * Default interval between commits.
+     */
+    private static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Default number of updates which trigger a commit.
+     */
+    private static final int DEFAULT_COMMIT_UPDATES = 10000;
+
+    /**
+     * Minimum file size for compaction.
+     */
+    private static final long COMPACT_MIN_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Maximum length of an encoded key.
+     */
+    private static final int MAX_KEY_LENGTH = 64 * 1024;
+
+    /**
+     * Length of a record without the key: key length, inode, position, last
+     * modified and checksum.
+     */
+    private static final int RECORD_OVERHEAD = 4 + 8 + 8 + 8 + 4;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * Record of a removed checkpoint, told apart by its negative position.
+     */
+    private static final Checkpoint REMOVED = new Checkpoint(0, -1, 0);
+
+    /**
+     * A checkpoint of a file.
+     */
+    public static final class Checkpoint {
+        private final long inode;
+        private final long position;
+        private final long lastModified;
+
+        Checkpoint(long inode, long position, long lastModified) {
+            this.inode = inode;
+            this.position = position;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Return the inode of the file.
+         *
+         * @return the inode
+         */
+        public long getInode() {
+            return inode;
+        }
+
+        /**
+         * Return the position up to which the lines were delivered.
+         *
+         * @return the position
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * Return the last modified time of the file when the lines were read.
+         *
+         * @return last modified time
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private final File file;
+
+    private final int commitUpdates;
+
+    private final ScheduledExecutorService committer;
+
+    /**
+     * The latest checkpoints.
+     */
+    private final Map<String, Checkpoint> checkpoints = new HashMap<String, Checkpoint>();
+
+    /**
+     * The checkpoints updated since the last commit.
+     */
+    private final Map<String, Checkpoint> dirty = new LinkedHashMap<String, Checkpoint>();
+
+    private FileChannel channel;
+
+    private ByteBuffer writeBuf = ByteBuffer.allocate(64 * 1024);
+
+    private int updates = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Opens the store with the default commit interval of 1s.
+     *
+     * @param file
+     *            the store file, created if it doesn't exist
+     * @throws IOException
+     *             if the store file can't be read or created
+     */
+    public CheckpointStore(File file) throws IOException {
+        this(file, DEFAULT_COMMIT_INTERVAL_MILLIS, DEFAULT_COMMIT_UPDATES);
+    }
+
+    /**
+     * Opens the store.
+     *
+     * @param file
+     *            the store file, created if it doesn't exist
+     * @param commitIntervalMillis
+     *            the interval between commits in milliseconds
+     * @param commitUpdates
+     *            the number of updates which trigger a commit before the
+     *            interval elapses
+     * @throws IOException
+     *             if the store file can't be read or created
+     */
+    public CheckpointStore(File file, long commitIntervalMillis, int commitUpdates) throws IOException {
+        TailerConfig.checkPositive(commitIntervalMillis, "commitIntervalMillis");
+        TailerConfig.checkPositive(commitUpdates, "commitUpdates");
+
+        this.file = file;
+        this.commitUpdates = commitUpdates;
+        load();
+
+        this.committer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "tailer-checkpoint-committer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.committer.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    commit();
+                } catch (IOException e) {
+                    // the updates stay dirty, retry in the next interval
+                    System.err.println("can't commit checkpoints to " + CheckpointStore.this.file + ": " + e);
+                }
+            }
+        }, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Return the checkpoint of a file.
+     *
+     * @param key
+     *            the key of the file, usually its absolute path
+     * @return the checkpoint, null if there is none
+     */
+    public synchronized Checkpoint get(String key) {
+        return checkpoints.get(key);
+    }
+
+    /**
+     * Update the checkpoint of a file, it is durable after the next commit.
+     *
+     * @param key
+     *            the key of the file, usually its absolute path
+     * @param inode
+     *            the inode of the file
+     * @param position
+     *            the position up to which the lines were delivered
+     * @param lastModified
+     *            the last modified time of the file
+     */
+    public synchronized void update(String key, long inode, long position, long lastModified) {
+        Checkpoint checkpoint = new Checkpoint(inode, position, lastModified);
+        checkpoints.put(key, checkpoint);
+        dirty.put(key, checkpoint);
+
+        if (++updates >= commitUpdates) {
+            try {
+                commit();
+            } catch (IOException e) {
+                // retried by the next commit
+                System.err.println("can't commit checkpoints to " + file + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Remove the checkpoint of a file, it is durable after the next commit.
+     *
+     * @param key
+     *            the key of the file
+     */
+    public synchronized void remove(String key) {
+        if (checkpoints.remove(key) != null) {
+            dirty.put(key, REMOVED);
+        }
+    }
+
+    /**
+     * Write and sync the updates since the last commit.
+     *
+     * @throws IOException
+     *             if the updates can't be written
+     */
+    public synchronized void commit() throws IOException {
+        if (closed || dirty.isEmpty()) {
+            return;
+        }
+
+        writeBuf.clear();
+        for (Map.Entry<String, Checkpoint> entry : dirty.entrySet()) {
+            encode(entry.getKey(), entry.getValue());
+        }
+        writeBuf.flip();
+        while (writeBuf.hasRemaining()) {
+            channel.write(writeBuf);
+        }
+        channel.force(false);
+
+        dirty.clear();
+        updates = 0;
+
+        if (channel.size() > COMPACT_MIN_SIZE && channel.size() > 2 * liveSize()) {
+            compact();
+        }
+    }
+
+    /**
+     * Commit the pending updates and close the store.
+     *
+     * @throws IOException
+     *             if the updates can't be written
+     */
+    public void close() throws IOException {
+        committer.shutdown();
+        synchronized (this) {
+            try {
+                commit();
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Rewrite the live checkpoints to a temporary file, and replace the store
+     * file with it.
+     */
+    private void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileChannel tmpChannel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            for (Map.Entry<String, Checkpoint> entry : checkpoints.entrySet()) {
+                writeBuf.clear();
+                encode(entry.getKey(), entry.getValue());
+                writeBuf.flip();
+                while (writeBuf.hasRemaining()) {
+                    tmpChannel.write(writeBuf);
+                }
+            }
+            tmpChannel.force(false);
+        } finally {
+            tmpChannel.close();
+        }
+
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+
+        channel.close();
+        channel = openChannel();
+    }
+
+    private void load() throws IOException {
+        channel = openChannel();
+
+        long size = channel.size();
+        ByteBuffer data = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+        while (data.hasRemaining() && channel.read(data, data.position()) >= 0) {
+            // read the whole file
+        }
+        data.flip();
+
+        CRC32 crc = new CRC32();
+        int valid = 0;
+        while (data.remaining() >= RECORD_OVERHEAD) {
+            int start = data.position();
+            int keyLength = data.getInt();
+            if (keyLength < 0 || keyLength > MAX_KEY_LENGTH || data.remaining() < keyLength + RECORD_OVERHEAD - 4) {
+                break;
+            }
+
+            byte[] key = new byte[keyLength];
+            data.get(key);
+            long inode = data.getLong();
+            long position = data.getLong();
+            long lastModified = data.getLong();
+
+            crc.reset();
+            crc.update(data.array(), start, data.position() - start);
+            if ((int) crc.getValue() != data.getInt()) {
+                break;
+            }
+
+            if (position < 0) {
+                checkpoints.remove(new String(key, CHARSET));
+            } else {
+                checkpoints.put(new String(key, CHARSET), new Checkpoint(inode, position, lastModified));
+            }
+            valid = data.position();
+        }
+
+        if (valid < size) {
+            // drop the torn record of a crash
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+    }
+
+    private FileChannel openChannel() throws IOException {
+        FileChannel opened = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        opened.position(opened.size());
+        return opened;
+    }
+
+    private void syncDirectory() {
+        File parent = file.getAbsoluteFile().getParentFile();
+        try {
+            FileChannel dir = FileChannel.open(parent.toPath(), StandardOpenOption.READ);
+            try {
+                dir.force(true);
+            } finally {
+                dir.close();
+            }
+        } catch (IOException e) {
+            // not supported on every platform, the rename is still atomic
+        }
+    }
+
+    private long liveSize() {
+        long size = 0;
+        for (String key : checkpoints.keySet()) {
+            size += RECORD_OVERHEAD + key.length();
+        }
+        return size;
+    }
+
+    private void encode(String key, Checkpoint checkpoint) {
+        byte[] bytes = key.getBytes(CHARSET);
+        int length = RECORD_OVERHEAD + bytes.length;
+        if (writeBuf.remaining() < length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(writeBuf.capacity() * 2, writeBuf.position() + length));
+            writeBuf.flip();
+            grown.put(writeBuf);
+            writeBuf = grown;
+        }
+
+        int start = writeBuf.position();
+        writeBuf.putInt(bytes.length);
+        writeBuf.put(bytes);
+        writeBuf.putLong(checkpoint.getInode());
+        writeBuf.putLong(checkpoint.getPosition());
+        writeBuf.putLong(checkpoint.getLastModified());
+
+        CRC32 crc = new CRC32();
+        crc.update(writeBuf.array(), start, writeBuf.position() - start);
+        writeBuf.putInt((int) crc.getValue());
+    }
+}
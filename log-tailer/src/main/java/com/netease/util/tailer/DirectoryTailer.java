@@ -0,0 +1,425 @@
+package com.netease.util.tailer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Follows all the files of a directory whose names match a glob pattern, e.g.
+ * <code>*.log</code>.
+ * <p>
+ * The directory is scanned once when the tailer is started; afterwards new
+ * files are discovered from the events of the shared
+ * {@link java.nio.file.WatchService}, so only the changed entries are looked
+ * at. The directory is scanned again only if events are lost, or periodically
+ * if it can't be watched.
+ * <p>
+ * Each file is followed by a {@link Tailer} added to a {@link TailerManager},
+ * so all the files share its threads and read buffers. A file which has no new
+ * content for the idle timeout is retired: its tailer is stopped, and once the
+ * manager has finished it, the file is followed again from the same position
+ * when it changes.
+ */
+public class DirectoryTailer {
+    private final File directory;
+
+    private final Path directoryPath;
+
+    private final PathMatcher matcher;
+
+    private final TailerListenerFactory factory;
+
+    private final TailerManager manager;
+
+    private final TailerConfig config;
+
+    private final long idleTimeoutMillis;
+
+    /**
+     * The followed files by name, read without lock to filter the events of
+     * the followed files.
+     */
+    private final Map<String, Follower> followers = new ConcurrentHashMap<String, Follower>();
+
+    /**
+     * Positions of the retired files by name, guarded by this.
+     */
+    private final Map<String, Long> retired = new HashMap<String, Long>();
+
+    /**
+     * Files changed since the last discovery.
+     */
+    private final ConcurrentLinkedQueue<Change> changes = new ConcurrentLinkedQueue<Change>();
+
+    /**
+     * Files deleted since the last discovery, whose retired positions are
+     * dropped.
+     */
+    private final ConcurrentLinkedQueue<String> deletions = new ConcurrentLinkedQueue<String>();
+
+    /**
+     * Whether a discovery task is scheduled.
+     */
+    private final AtomicBoolean discoveryScheduled = new AtomicBoolean();
+
+    /**
+     * Whether events were lost and the directory must be scanned.
+     */
+    private volatile boolean rescan = false;
+
+    private final DirectoryWatcher.EntryListener entryListener = new DirectoryWatcher.EntryListener() {
+        public void entryChanged(String name, boolean created) {
+            if (name == null) {
+                rescan = true;
+            } else {
+                Follower follower = followers.get(name);
+                if (!created && follower != null && !follower.retiring) {
+                    // an append to a followed file
+                    return;
+                }
+                changes.add(new Change(name, created));
+            }
+            scheduleDiscovery();
+        }
+
+        public void entryDeleted(String name) {
+            deletions.add(name);
+            scheduleDiscovery();
+        }
+    };
+
+    private final Runnable discovery = new Runnable() {
+        public void run() {
+            discoveryScheduled.set(false);
+            discover();
+        }
+    };
+
+    private boolean watching = false;
+
+    private boolean started = false;
+
+    private boolean stopped = false;
+
+    private ScheduledFuture<?> idleTask;
+
+    private ScheduledFuture<?> rescanTask;
+
+    /**
+     * A followed file.
+     */
+    private static final class Follower {
+        private final Tailer tailer;
+        private long dataPollCount;
+        private long lastActive;
+
+        /**
+         * Whether the tailer is stopped and not finished yet.
+         */
+        private volatile boolean retiring;
+
+        /**
+         * Whether the file changed, or was created, while retiring.
+         */
+        private boolean changed;
+        private boolean created;
+
+        Follower(Tailer tailer, long now) {
+            this.tailer = tailer;
+            this.lastActive = now;
+        }
+    }
+
+    /**
+     * A changed entry of the directory.
+     */
+    private static final class Change {
+        private final String name;
+        private final boolean created;
+
+        Change(String name, boolean created) {
+            this.name = name;
+            this.created = created;
+        }
+    }
+
+    /**
+     * Creates a tailer of the files of a directory.
+     *
+     * @param directory
+     *            the directory
+     * @param glob
+     *            the glob pattern of the names of the files to follow
+     * @param factory
+     *            creates the listener of each file
+     * @param manager
+     *            the manager running the tailers of the files
+     * @param config
+     *            options of the tailers of the files
+     * @param idleTimeoutMillis
+     *            the time without new content after which a file is retired
+     */
+    public DirectoryTailer(File directory, String glob, TailerListenerFactory factory, TailerManager manager,
+            TailerConfig config, long idleTimeoutMillis) {
+        TailerConfig.checkPositive(idleTimeoutMillis, "idleTimeoutMillis");
+
+        this.directory = directory;
+        this.directoryPath = directory.getAbsoluteFile().toPath();
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.factory = factory;
+        this.manager = manager;
+        this.config = config;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Starts following the matching files, from their beginning, or from the
+     * checkpoints of the configured store.
+     *
+     * @throws IOException
+     *             if the directory can't be read
+     */
+    public synchronized void start() throws IOException {
+        if (started) {
+            throw new IllegalStateException("already started: " + directory);
+        }
+        started = true;
+
+        // watch before scanning so that no new file is missed
+        try {
+            DirectoryWatcher.getInstance().register(directoryPath, entryListener);
+            watching = true;
+        } catch (IOException e) {
+            watching = false;
+        }
+        scan();
+
+        ScheduledExecutorService scheduler = manager.getScheduler();
+        long idlePeriod = Math.max(idleTimeoutMillis / 2, 1);
+        idleTask = scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                retireIdle();
+            }
+        }, idlePeriod, idlePeriod, TimeUnit.MILLISECONDS);
+
+        if (!watching) {
+            long rescanPeriod = config.getSafetyPollMillis();
+            rescanTask = scheduler.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    rescan = true;
+                    discover();
+                }
+            }, rescanPeriod, rescanPeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops following the files.
+     */
+    public synchronized void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+
+        if (watching) {
+            try {
+                DirectoryWatcher.getInstance().unregister(directoryPath, entryListener);
+            } catch (IOException e) {
+                // not registered
+            }
+        }
+        if (idleTask != null) {
+            idleTask.cancel(false);
+        }
+        if (rescanTask != null) {
+            rescanTask.cancel(false);
+        }
+
+        for (Follower follower : followers.values()) {
+            follower.tailer.stop();
+        }
+        followers.clear();
+        retired.clear();
+        changes.clear();
+        deletions.clear();
+    }
+
+    /**
+     * Return the number of the followed files, not counting the retired ones.
+     *
+     * @return number of files
+     */
+    public int size() {
+        int size = 0;
+        for (Follower follower : followers.values()) {
+            if (!follower.retiring) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Return whether the file with the given name is followed.
+     *
+     * @param name
+     *            name of the file
+     * @return true if the file is followed
+     */
+    public boolean isFollowing(String name) {
+        Follower follower = followers.get(name);
+        return follower != null && !follower.retiring;
+    }
+
+    private void scheduleDiscovery() {
+        if (discoveryScheduled.compareAndSet(false, true)) {
+            manager.getScheduler().execute(discovery);
+        }
+    }
+
+    private synchronized void discover() {
+        if (stopped) {
+            return;
+        }
+
+        String deleted;
+        while ((deleted = deletions.poll()) != null) {
+            retired.remove(deleted);
+        }
+
+        Change change;
+        while ((change = changes.poll()) != null) {
+            if (matches(change.name)) {
+                changed(change.name, change.created);
+            }
+        }
+
+        if (rescan) {
+            rescan = false;
+            try {
+                scan();
+            } catch (IOException e) {
+                // the directory is gone, scan again after the next event
+            }
+        }
+    }
+
+    private void scan() throws IOException {
+        Set<String> names = new HashSet<String>();
+        DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath);
+        try {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                names.add(name);
+                if (!followers.containsKey(name) && matcher.matches(path.getFileName())) {
+                    changed(name, false);
+                }
+            }
+        } finally {
+            stream.close();
+        }
+        // forget the files which are gone, their deletions may be lost
+        retired.keySet().retainAll(names);
+    }
+
+    private boolean matches(String name) {
+        return matcher.matches(directoryPath.getFileSystem().getPath(name));
+    }
+
+    /**
+     * Follow the changed file if it is not followed yet.
+     */
+    private void changed(String name, boolean created) {
+        Follower follower = followers.get(name);
+        if (follower != null) {
+            if (!follower.retiring) {
+                return;
+            }
+            if (manager.contains(follower.tailer)) {
+                // followed again once the old tailer is finished
+                follower.changed = true;
+                follower.created |= created;
+                return;
+            }
+            followers.remove(name);
+            retired.put(name, follower.tailer.getPosition());
+        }
+
+        File file = new File(directory, name);
+        if (!file.isFile()) {
+            return;
+        }
+
+        // a retired file resumes where it stopped, unless it was replaced
+        long position = 0;
+        Long retiredPosition = retired.remove(name);
+        if (retiredPosition != null && !created && file.length() >= retiredPosition) {
+            position = retiredPosition;
+        }
+
+        Tailer tailer = new Tailer(file, factory.create(file), position, config);
+        followers.put(name, new Follower(tailer, System.currentTimeMillis()));
+        manager.add(tailer);
+    }
+
+    private synchronized void retireIdle() {
+        if (stopped) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Map<String, Boolean> resumed = new HashMap<String, Boolean>();
+        Iterator<Map.Entry<String, Follower>> it = followers.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Follower> entry = it.next();
+            Follower follower = entry.getValue();
+            long dataPollCount = follower.tailer.getDataPollCount();
+
+            if (!manager.contains(follower.tailer)) {
+                // retired, stopped or failed, the position is final
+                it.remove();
+                long position = follower.tailer.getPosition();
+                File file = new File(directory, entry.getKey());
+                if (file.exists()) {
+                    // otherwise its deletion may already be handled
+                    retired.put(entry.getKey(), position);
+                }
+                if (follower.retiring && (follower.changed || file.length() > position)) {
+                    // changed since the tailer was stopped
+                    resumed.put(entry.getKey(), follower.created);
+                }
+            } else if (follower.retiring) {
+                // not finished yet, the old tailer may still read the file
+                continue;
+            } else if (dataPollCount != follower.dataPollCount) {
+                follower.dataPollCount = dataPollCount;
+                follower.lastActive = now;
+            } else if (now - follower.lastActive >= idleTimeoutMillis) {
+                follower.retiring = true;
+                manager.stop(follower.tailer);
+            }
+        }
+
+        for (Map.Entry<String, Boolean> entry : resumed.entrySet()) {
+            if (matches(entry.getKey())) {
+                changed(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.netease.util.tailer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches the directories of the tailed files with one shared
+ * {@link WatchService}, and signals the notifiers waiting for the changed
+ * entries, and the listeners of any entry of the directories.
+ * <p>
+ * Each directory is registered once, however many files are tailed in it, and
+ * all the events are dispatched by a single daemon thread.
+ */
+final class DirectoryWatcher implements Runnable {
+    /**
+     * Receives the changes of every entry of a directory.
+     */
+    interface EntryListener {
+        /**
+         * Called from the watcher thread when an entry is created or
+         * modified, it must return quickly.
+         * 
+         * @param name
+         *            name of the entry, null if events are lost and every
+         *            entry may have changed
+         * @param created
+         *            true if the entry was created
+         */
+        void entryChanged(String name, boolean created);
+
+        /**
+         * Called from the watcher thread when an entry is deleted, it must
+         * return quickly.
+         * 
+         * @param name
+         *            name of the entry
+         */
+        void entryDeleted(String name);
+    }
+
+    private static DirectoryWatcher instance;
+
+    private final WatchService service;
+
+    /**
+     * Registered directories, guarded by this.
+     */
+    private final Map<Path, Registration> registrations = new HashMap<Path, Registration>();
+
+    /**
+     * A watched directory and the notifiers of its entries.
+     */
+    private static final class Registration {
+        private final WatchKey key;
+        private final Map<String, List<WatchServiceNotifier>> notifiers = new HashMap<String, List<WatchServiceNotifier>>();
+        private final List<EntryListener> listeners = new ArrayList<EntryListener>(1);
+
+        Registration(WatchKey key) {
+            this.key = key;
+        }
+
+        boolean isEmpty() {
+            return notifiers.isEmpty() && listeners.isEmpty();
+        }
+    }
+
+    private DirectoryWatcher(WatchService service) {
+        this.service = service;
+    }
+
+    /**
+     * Return the shared watcher, starting it if needed.
+     * 
+     * @return the watcher
+     * @throws IOException
+     *             if the watch service can't be created
+     */
+    static synchronized DirectoryWatcher getInstance() throws IOException {
+        if (instance == null) {
+            DirectoryWatcher watcher = new DirectoryWatcher(FileSystems.getDefault().newWatchService());
+            Thread thread = new Thread(watcher, "tailer-directory-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            instance = watcher;
+        }
+        return instance;
+    }
+
+    /**
+     * Signal the notifier on changes of the entry with the given name.
+     * 
+     * @param directory
+     *            the directory
+     * @param name
+     *            name of the entry
+     * @param notifier
+     *            the notifier
+     * @throws IOException
+     *             if the directory can't be watched
+     */
+    synchronized void register(Path directory, String name, WatchServiceNotifier notifier) throws IOException {
+        Registration registration = registrationOf(directory);
+        List<WatchServiceNotifier> list = registration.notifiers.get(name);
+        if (list == null) {
+            list = new ArrayList<WatchServiceNotifier>(1);
+            registration.notifiers.put(name, list);
+        }
+        list.add(notifier);
+    }
+
+    /**
+     * Stop signaling the notifier, and stop watching the directory once no
+     * notifier is left.
+     * 
+     * @param directory
+     *            the directory
+     * @param name
+     *            name of the entry
+     * @param notifier
+     *            the notifier
+     */
+    synchronized void unregister(Path directory, String name, WatchServiceNotifier notifier) {
+        Registration registration = registrations.get(directory);
+        if (registration == null) {
+            return;
+        }
+
+        List<WatchServiceNotifier> list = registration.notifiers.get(name);
+        if (list != null && list.remove(notifier) && list.isEmpty()) {
+            registration.notifiers.remove(name);
+        }
+        release(directory, registration);
+    }
+
+    /**
+     * Report the changes of every entry of the directory to the listener.
+     * 
+     * @param directory
+     *            the directory
+     * @param listener
+     *            the listener
+     * @throws IOException
+     *             if the directory can't be watched
+     */
+    synchronized void register(Path directory, EntryListener listener) throws IOException {
+        registrationOf(directory).listeners.add(listener);
+    }
+
+    /**
+     * Stop reporting changes to the listener, and stop watching the directory
+     * once nothing else is registered.
+     * 
+     * @param directory
+     *            the directory
+     * @param listener
+     *            the listener
+     */
+    synchronized void unregister(Path directory, EntryListener listener) {
+        Registration registration = registrations.get(directory);
+        if (registration != null) {
+            registration.listeners.remove(listener);
+            release(directory, registration);
+        }
+    }
+
+    private Registration registrationOf(Path directory) throws IOException {
+        Registration registration = registrations.get(directory);
+        if (registration == null) {
+            WatchKey key = directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            registration = new Registration(key);
+            registrations.put(directory, registration);
+        }
+        return registration;
+    }
+
+    private void release(Path directory, Registration registration) {
+        if (registration.isEmpty()) {
+            registration.key.cancel();
+            registrations.remove(directory);
+        }
+    }
+
+    public void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException e) {
+                continue;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // events are lost, every entry may have changed
+                    signal(directory, null, false);
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    deleted(directory, ((Path) event.context()).getFileName().toString());
+                } else {
+                    signal(directory, ((Path) event.context()).getFileName().toString(),
+                            event.kind() == StandardWatchEventKinds.ENTRY_CREATE);
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private synchronized void deleted(Path directory, String name) {
+        Registration registration = registrations.get(directory);
+        if (registration == null) {
+            return;
+        }
+
+        // the tailers of the file see it replaced by their own probes
+        for (EntryListener listener : registration.listeners) {
+            listener.entryDeleted(name);
+        }
+    }
+
+    private synchronized void signal(Path directory, String name, boolean created) {
+        Registration registration = registrations.get(directory);
+        if (registration == null) {
+            return;
+        }
+
+        for (EntryListener listener : registration.listeners) {
+            listener.entryChanged(name, created);
+        }
+
+        if (name == null) {
+            for (List<WatchServiceNotifier> list : registration.notifiers.values()) {
+                for (WatchServiceNotifier notifier : list) {
+                    notifier.signal();
+                }
+            }
+        } else {
+            List<WatchServiceNotifier> list = registration.notifiers.get(name);
+            if (list != null) {
+                for (WatchServiceNotifier notifier : list) {
+                    notifier.signal();
+                }
+            }
+        }
+    }
+}
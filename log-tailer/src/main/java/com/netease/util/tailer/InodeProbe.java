@@ -0,0 +1,151 @@
+package com.netease.util.tailer;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import com.netease.util.InodeUtil;
+
+/**
+ * Probes the open file and the inode of its path, to detect rotation.
+ * <p>
+ * By default this goes through NIO, without the native library: the path is
+ * resolved once, and the inode is read from the <code>unix</code> attribute
+ * view where it is supported, otherwise it is derived from the file key of the
+ * basic attributes, which identifies the file as well on most platforms.
+ * <p>
+ * With the native probe, the open descriptor and the path are checked by a
+ * single call to {@link InodeUtil#probe(java.io.FileDescriptor, byte[], long[])},
+ * which returns the size and the last modified time of the open file as well.
+ * It falls back to NIO if the native library is missing, or predates the
+ * probe.
+ */
+final class InodeProbe {
+    /**
+     * Whether the <code>unix</code> attribute view is supported.
+     */
+    private static final boolean UNIX_VIEW = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    /**
+     * Holds whether the native probe can be used, checked on the first use of
+     * the native probe so that the NIO path never loads the native library.
+     */
+    private static final class NativeProbe {
+        static final boolean AVAILABLE = isAvailable();
+
+        private static boolean isAvailable() {
+            try {
+                if (InodeUtil.isAvailable()) {
+                    // fails on the invalid descriptor, if the probe exists
+                    InodeUtil.probe(new FileDescriptor(), new byte[0], new long[2 * InodeUtil.STAT_FIELDS]);
+                    return true;
+                }
+            } catch (UnsatisfiedLinkError e) {
+                // library built without the probe
+            }
+            return false;
+        }
+    }
+
+    private final File file;
+
+    private final Path path;
+
+    /**
+     * The encoded path for the native probe.
+     */
+    private final byte[] encodedPath;
+
+    /**
+     * Values returned by the native probe, null if it is not used.
+     */
+    private final long[] stats;
+
+    /**
+     * Size of the open file at the last probe.
+     */
+    private long size;
+
+    /**
+     * Last modified time of the open file at the last probe, -1 if it is not
+     * known.
+     */
+    private long lastModified = -1;
+
+    InodeProbe(File file, boolean nativeProbe) {
+        this.file = file;
+        this.path = file.getAbsoluteFile().toPath();
+        if (nativeProbe && NativeProbe.AVAILABLE) {
+            this.encodedPath = InodeUtil.encodePath(path.toString());
+            this.stats = new long[2 * InodeUtil.STAT_FIELDS];
+        } else {
+            this.encodedPath = null;
+            this.stats = null;
+        }
+    }
+
+    /**
+     * Return the inode of the file.
+     *
+     * @return the inode, -1 if the file doesn't exist or can't be read
+     */
+    long getInode() {
+        try {
+            if (UNIX_VIEW) {
+                return ((Number) Files.getAttribute(path, "unix:ino")).longValue();
+            }
+
+            Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            // no file key, rotation is only detected by the file size
+            return key == null ? 0 : key.hashCode();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Probe the open file and the path.
+     *
+     * @param reader
+     *            the open file
+     * @return the inode of the path, -1 if the file doesn't exist or can't be
+     *         read
+     * @throws IOException
+     *             if the open file can't be probed
+     */
+    long probe(RandomAccessFile reader) throws IOException {
+        if (stats != null && InodeUtil.probe(reader.getFD(), encodedPath, stats)) {
+            size = stats[1];
+            lastModified = stats[2];
+            return stats[InodeUtil.STAT_FIELDS];
+        }
+
+        size = reader.getChannel().size();
+        lastModified = -1;
+        return getInode();
+    }
+
+    /**
+     * Return the size of the open file at the last probe.
+     *
+     * @return the size
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Return the last modified time of the open file, probed by the last call
+     * of {@link #probe(RandomAccessFile)} if possible, or of the path.
+     *
+     * @return the last modified time
+     */
+    long getLastModified() {
+        return lastModified >= 0 ? lastModified : file.lastModified();
+    }
+}
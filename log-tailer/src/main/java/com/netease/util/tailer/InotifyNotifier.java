@@ -0,0 +1,114 @@
+package com.netease.util.tailer;
+
+import java.io.File;
+
+import com.netease.util.InotifyUtil;
+
+/**
+ * Waits for inotify events of the parent directory of the tailed file.
+ * <p>
+ * Only the events of the directory itself and of the entry with the name of
+ * the file wake the tailer, so appends, creation after rotation and the
+ * rotation itself are noticed right away. The wait still times out after the
+ * safety poll interval, for the changes which are not reported, e.g. late
+ * writes to the file after it is renamed. A wakeup, e.g. when the tailer is
+ * stopped, ends the wait through an eventfd polled along with the inotify
+ * instance.
+ */
+final class InotifyNotifier extends ChangeNotifier {
+    private static final int DIRECTORY_EVENTS = InotifyUtil.IN_MODIFY | InotifyUtil.IN_CREATE
+            | InotifyUtil.IN_MOVED_FROM | InotifyUtil.IN_MOVED_TO | InotifyUtil.IN_DELETE
+            | InotifyUtil.IN_DELETE_SELF | InotifyUtil.IN_MOVE_SELF;
+
+    private final int fd;
+
+    /**
+     * The eventfd ending the wait.
+     */
+    private final int wakeupFd;
+
+    private final String name;
+
+    private final long safetyPollMillis;
+
+    /**
+     * Whether a wakeup was requested since the last wait.
+     */
+    private volatile boolean woken = false;
+
+    /**
+     * Whether the descriptors are closed, guarded by this.
+     */
+    private boolean closed = false;
+
+    private InotifyNotifier(int fd, int wakeupFd, String name, long safetyPollMillis) {
+        this.fd = fd;
+        this.wakeupFd = wakeupFd;
+        this.name = name;
+        this.safetyPollMillis = safetyPollMillis;
+    }
+
+    /**
+     * Creates the notifier.
+     * 
+     * @param file
+     *            the tailed file
+     * @param safetyPollMillis
+     *            the maximum time to wait for an event
+     * @return the notifier, null if the directory can't be watched
+     */
+    static InotifyNotifier create(File file, long safetyPollMillis) {
+        File absolute = file.getAbsoluteFile();
+        File parent = absolute.getParentFile();
+        if (parent == null) {
+            return null;
+        }
+
+        int fd = InotifyUtil.init();
+        if (fd < 0) {
+            return null;
+        }
+        if (InotifyUtil.addWatch(fd, parent.getPath(), DIRECTORY_EVENTS) < 0) {
+            InotifyUtil.close(fd);
+            return null;
+        }
+        int wakeupFd = InotifyUtil.initWakeup();
+        if (wakeupFd < 0) {
+            InotifyUtil.close(fd);
+            return null;
+        }
+        return new InotifyNotifier(fd, wakeupFd, absolute.getName(), safetyPollMillis);
+    }
+
+    @Override
+    void await(long delayMillis) {
+        long deadline = System.currentTimeMillis() + safetyPollMillis;
+        long remaining = safetyPollMillis;
+        while (remaining > 0 && !woken) {
+            // events of other files in the directory are skipped
+            int mask = InotifyUtil.await(fd, wakeupFd, name, (int) Math.min(remaining, Integer.MAX_VALUE));
+            if (mask != 0) {
+                break;
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        woken = false;
+    }
+
+    @Override
+    synchronized void wakeup() {
+        if (!closed) {
+            woken = true;
+            InotifyUtil.wakeup(wakeupFd);
+        }
+    }
+
+    @Override
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            InotifyUtil.close(fd);
+            InotifyUtil.close(wakeupFd);
+        }
+    }
+}
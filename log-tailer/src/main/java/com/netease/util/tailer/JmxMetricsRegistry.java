@@ -0,0 +1,96 @@
+package com.netease.util.tailer;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Registers the metrics of every tailer as an MBean named
+ * <code>com.netease.util.tailer:type=Tailer,file="&lt;path&gt;"</code>.
+ * <p>
+ * A tailer of a file which is already registered replaces the previous one,
+ * e.g. when a directory tailer follows a file again.
+ */
+public class JmxMetricsRegistry implements TailerMetricsRegistry {
+    /**
+     * Domain of the names of the MBeans.
+     */
+    public static final String DOMAIN = "com.netease.util.tailer";
+
+    private final MBeanServer server;
+
+    /**
+     * The registered metrics by name.
+     */
+    private final Map<ObjectName, TailerMetrics> registered = new HashMap<ObjectName, TailerMetrics>();
+
+    /**
+     * Creates a registry of the platform MBean server.
+     */
+    public JmxMetricsRegistry() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Creates a registry of an MBean server.
+     * 
+     * @param server
+     *            the MBean server
+     */
+    public JmxMetricsRegistry(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Return the name of the MBean of the metrics of a file.
+     * 
+     * @param path
+     *            the path of the file
+     * @return the name
+     */
+    public static ObjectName getObjectName(String path) {
+        try {
+            return new ObjectName(DOMAIN + ":type=Tailer,file=" + ObjectName.quote(path));
+        } catch (MalformedObjectNameException e) {
+            // the path is quoted
+            throw new IllegalArgumentException("invalid path: " + path, e);
+        }
+    }
+
+    public synchronized void register(TailerMetrics metrics) {
+        ObjectName name = getObjectName(metrics.getFile());
+        try {
+            if (registered.remove(name) != null) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+            registered.put(name, metrics);
+        } catch (JMException e) {
+            // monitoring must not stop the tailer
+            System.err.println("can't register " + name + ": " + e);
+        }
+    }
+
+    public synchronized void unregister(TailerMetrics metrics) {
+        ObjectName name = getObjectName(metrics.getFile());
+        if (registered.get(name) != metrics) {
+            // replaced by another tailer of the file
+            return;
+        }
+
+        registered.remove(name);
+        try {
+            server.unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            // unregistered meanwhile
+        } catch (JMException e) {
+            System.err.println("can't unregister " + name + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.netease.util.tailer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A batch of lines passed to a {@link BatchTailerListener}.
+ * <p>
+ * The bytes of the lines are copied into a buffer owned by the batch, which is
+ * reused by the tailer for the next batch.
+ */
+public final class LineBatch {
+    /**
+     * Charset of the lines.
+     */
+    private final Charset charset;
+
+    /**
+     * Bytes of all the lines.
+     */
+    private byte[] data;
+
+    /**
+     * Reusable view of the bytes.
+     */
+    private ByteBuffer view;
+
+    /**
+     * Offset of each line in the bytes.
+     */
+    private int[] offsets;
+
+    /**
+     * Position after each line in the file.
+     */
+    private long[] positions;
+
+    /**
+     * Number of lines.
+     */
+    private int size = 0;
+
+    /**
+     * Number of bytes.
+     */
+    private int byteCount = 0;
+
+    /**
+     * Last modified time of the file.
+     */
+    private long lastModified;
+
+    LineBatch(Charset charset, int initialLines, int initialBytes) {
+        this.charset = charset;
+        this.data = new byte[initialBytes];
+        this.view = ByteBuffer.wrap(data);
+        // one more offset for the end of the last line
+        this.offsets = new int[initialLines + 1];
+        this.positions = new long[initialLines];
+    }
+
+    /**
+     * Return the number of lines.
+     *
+     * @return the number of lines
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the number of bytes of all the lines, without line terminators.
+     *
+     * @return the number of bytes
+     */
+    public int getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Return the line at the given index, decoded as string.
+     *
+     * @param index
+     *            index of the line
+     * @return the line
+     */
+    public String getLine(int index) {
+        checkIndex(index);
+        return new String(data, offsets[index], offsets[index + 1] - offsets[index], charset);
+    }
+
+    /**
+     * Return the bytes of the line at the given index, between the position
+     * and the limit of the returned buffer. The buffer is reused by the next
+     * call.
+     *
+     * @param index
+     *            index of the line
+     * @return the bytes of the line
+     */
+    public ByteBuffer getBytes(int index) {
+        checkIndex(index);
+        view.clear();
+        view.position(offsets[index]);
+        view.limit(offsets[index + 1]);
+        return view;
+    }
+
+    /**
+     * Return the read position after the line at the given index.
+     *
+     * @param index
+     *            index of the line
+     * @return the read position
+     */
+    public long getPosition(int index) {
+        checkIndex(index);
+        return positions[index];
+    }
+
+    /**
+     * Return the read position after the last line of the batch, which is the
+     * position to resume from once the batch is processed.
+     *
+     * @return the read position
+     */
+    public long getEndPosition() {
+        return size == 0 ? -1 : positions[size - 1];
+    }
+
+    /**
+     * Return the last modified time of the file when the batch was read.
+     *
+     * @return last modified time
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    void add(ByteBuffer line, long position) {
+        int length = line.remaining();
+        if (size == positions.length) {
+            long[] grownPositions = new long[positions.length * 2];
+            int[] grownOffsets = new int[grownPositions.length + 1];
+            System.arraycopy(offsets, 0, grownOffsets, 0, offsets.length);
+            offsets = grownOffsets;
+            System.arraycopy(positions, 0, grownPositions, 0, positions.length);
+            positions = grownPositions;
+        }
+        if (byteCount + length > data.length) {
+            byte[] grown = new byte[Math.max(data.length * 2, byteCount + length)];
+            System.arraycopy(data, 0, grown, 0, byteCount);
+            data = grown;
+            view = ByteBuffer.wrap(data);
+        }
+
+        int start = line.position();
+        line.get(data, byteCount, length);
+        line.position(start);
+        byteCount += length;
+        positions[size] = position;
+        offsets[++size] = byteCount;
+    }
+
+    void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    void clear() {
+        size = 0;
+        byteCount = 0;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.netease.util.tailer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes lines into strings.
+ * <p>
+ * A line of ASCII characters is copied straight into the string when the
+ * charset encodes ASCII as itself, as UTF-8 and GBK do. Other lines are
+ * decoded by a reused {@link CharsetDecoder} into a reused char buffer, which
+ * grows on demand. Malformed input is replaced, as by
+ * {@link String#String(byte[], Charset)}.
+ * <p>
+ * Since Java 9 the string constructor itself scans for ASCII with an
+ * intrinsic and decodes UTF-8 without a decoder, which beats both, so the
+ * lines are simply passed to it there.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class LineDecoder {
+    /**
+     * Initial capacity of the scratch buffers.
+     */
+    private static final int INITIAL_SIZE = 256;
+
+    /**
+     * Whether {@link String#String(byte[], int, int, Charset)} is the fastest
+     * way, i.e. whether the strings are compact ones, from Java 9 on.
+     */
+    private static final boolean STRING_DECODING = !System.getProperty("java.specification.version", "1.7")
+            .startsWith("1.");
+
+    private final Charset charset;
+
+    private final CharsetDecoder decoder;
+
+    /**
+     * Whether the bytes below 0x80 are ASCII characters in the charset.
+     */
+    private final boolean asciiCompatible;
+
+    private CharBuffer chars = CharBuffer.allocate(INITIAL_SIZE);
+
+    /**
+     * Copy of a line of a direct buffer.
+     */
+    private byte[] bytes = new byte[INITIAL_SIZE];
+
+    /**
+     * Reusable view of the last decoded array.
+     */
+    private ByteBuffer in;
+
+    /**
+     * Creates a decoder.
+     *
+     * @param charset
+     *            the charset of the lines
+     */
+    public LineDecoder(Charset charset) {
+        this.charset = charset;
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiCompatible = isAsciiCompatible(charset);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        String decoded = new String(ascii, charset);
+        if (decoded.length() != ascii.length) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length; i++) {
+            if (decoded.charAt(i) != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the charset of the lines.
+     *
+     * @return the charset
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Decode the bytes between the position and the limit of the buffer, the
+     * position of the buffer is not changed.
+     *
+     * @param line
+     *            the line
+     * @return the decoded line
+     */
+    public String decode(ByteBuffer line) {
+        int length = line.remaining();
+        if (line.hasArray()) {
+            return decode(line.array(), line.arrayOffset() + line.position(), length);
+        }
+
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(bytes.length * 2, length)];
+        }
+        int start = line.position();
+        line.get(bytes, 0, length);
+        line.position(start);
+        return decode(bytes, 0, length);
+    }
+
+    /**
+     * Decode the bytes of a line.
+     *
+     * @param array
+     *            the array holding the line
+     * @param offset
+     *            offset of the line in the array
+     * @param length
+     *            length of the line
+     * @return the decoded line
+     */
+    @SuppressWarnings("deprecation")
+    public String decode(byte[] array, int offset, int length) {
+        if (STRING_DECODING) {
+            return new String(array, offset, length, charset);
+        }
+        if (asciiCompatible && isAscii(array, offset, length)) {
+            // each byte is a char, no decoding needed
+            return new String(array, 0, offset, length);
+        }
+
+        // a char per byte at most, for every charset but UTF-16 and UTF-32
+        int capacity = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+        if (chars.capacity() < capacity) {
+            chars = CharBuffer.allocate(Math.max(chars.capacity() * 2, capacity));
+        }
+
+        chars.clear();
+        decoder.reset();
+        if (in == null || in.array() != array) {
+            in = ByteBuffer.wrap(array);
+        }
+        in.clear();
+        in.position(offset);
+        in.limit(offset + length);
+        CoderResult result = decoder.decode(in, chars, true);
+        if (result.isUnderflow()) {
+            result = decoder.flush(chars);
+        }
+        if (!result.isUnderflow()) {
+            // can't happen with enough room and replacement
+            return new String(array, offset, length, charset);
+        }
+        return new String(chars.array(), 0, chars.position());
+    }
+
+    private static boolean isAscii(byte[] array, int offset, int length) {
+        // no branch per byte, so that the loop can be vectorized
+        int bits = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            bits |= array[i];
+        }
+        return bits >= 0;
+    }
+}
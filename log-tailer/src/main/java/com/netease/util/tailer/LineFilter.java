@@ -0,0 +1,223 @@
+package com.netease.util.tailer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Selects lines by the keywords they contain, on their bytes, before they are
+ * decoded.
+ * <p>
+ * A line is accepted if it contains one of the include keywords, or if there
+ * are none, and contains none of the exclude keywords. All the keywords are
+ * searched in a single pass over the line by an Aho-Corasick automaton, whose
+ * transitions are resolved in advance into a table with an entry per state and
+ * byte value, so that every byte costs one lookup.
+ * <p>
+ * Instances are immutable and may be shared by tailers.
+ */
+public final class LineFilter {
+    /**
+     * Output of a state ending an include keyword.
+     */
+    private static final int INCLUDE = 1;
+
+    /**
+     * Output of a state ending an exclude keyword.
+     */
+    private static final int EXCLUDE = 2;
+
+    /**
+     * Next state by state and byte value, at <code>state * 256 + byte</code>.
+     */
+    private final int[] transitions;
+
+    /**
+     * Keywords ending at each state, as {@link #INCLUDE} and {@link #EXCLUDE}
+     * flags.
+     */
+    private final byte[] outputs;
+
+    private final boolean hasIncludes;
+
+    private final boolean hasExcludes;
+
+    /**
+     * Creates a filter of keywords in a charset.
+     *
+     * @param includes
+     *            the keywords a line must contain one of, empty to accept
+     *            every line not excluded
+     * @param excludes
+     *            the keywords a line must not contain
+     * @param charset
+     *            the charset of the file
+     */
+    public LineFilter(String[] includes, String[] excludes, Charset charset) {
+        this(encode(includes, charset), encode(excludes, charset));
+    }
+
+    /**
+     * Creates a filter of byte patterns.
+     *
+     * @param includes
+     *            the patterns a line must contain one of, empty to accept
+     *            every line not excluded
+     * @param excludes
+     *            the patterns a line must not contain
+     */
+    public LineFilter(byte[][] includes, byte[][] excludes) {
+        if (includes.length == 0 && excludes.length == 0) {
+            throw new IllegalArgumentException("no keyword to filter with");
+        }
+        this.hasIncludes = includes.length > 0;
+        this.hasExcludes = excludes.length > 0;
+
+        // the trie, with -1 for missing transitions
+        List<int[]> trie = new ArrayList<int[]>();
+        List<Integer> trieOutputs = new ArrayList<Integer>();
+        trie.add(newState());
+        trieOutputs.add(0);
+        for (byte[] keyword : includes) {
+            add(trie, trieOutputs, keyword, INCLUDE);
+        }
+        for (byte[] keyword : excludes) {
+            add(trie, trieOutputs, keyword, EXCLUDE);
+        }
+
+        int states = trie.size();
+        transitions = new int[states * 256];
+        outputs = new byte[states];
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+
+        // breadth first, so that the failure state of a state is complete
+        // before the state itself
+        int[] root = trie.get(0);
+        outputs[0] = trieOutputs.get(0).byteValue();
+        for (int b = 0; b < 256; b++) {
+            int child = root[b];
+            if (child < 0) {
+                transitions[b] = 0;
+            } else {
+                transitions[b] = child;
+                fail[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            outputs[state] = (byte) (trieOutputs.get(state) | outputs[fail[state]]);
+            int[] children = trie.get(state);
+            for (int b = 0; b < 256; b++) {
+                int child = children[b];
+                int fallback = transitions[fail[state] * 256 + b];
+                if (child < 0) {
+                    transitions[state * 256 + b] = fallback;
+                } else {
+                    transitions[state * 256 + b] = child;
+                    fail[child] = fallback;
+                    queue[tail++] = child;
+                }
+            }
+        }
+    }
+
+    private static byte[][] encode(String[] keywords, Charset charset) {
+        byte[][] encoded = new byte[keywords.length][];
+        for (int i = 0; i < keywords.length; i++) {
+            encoded[i] = keywords[i].getBytes(charset);
+        }
+        return encoded;
+    }
+
+    private static int[] newState() {
+        int[] state = new int[256];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static void add(List<int[]> trie, List<Integer> trieOutputs, byte[] keyword, int output) {
+        if (keyword.length == 0) {
+            throw new IllegalArgumentException("keyword must not be empty");
+        }
+
+        int state = 0;
+        for (byte b : keyword) {
+            int[] children = trie.get(state);
+            int next = children[b & 0xff];
+            if (next < 0) {
+                next = trie.size();
+                children[b & 0xff] = next;
+                trie.add(newState());
+                trieOutputs.add(0);
+            }
+            state = next;
+        }
+        trieOutputs.set(state, trieOutputs.get(state) | output);
+    }
+
+    /**
+     * Return whether the line is accepted.
+     *
+     * @param line
+     *            the line, between the position and the limit of the buffer,
+     *            which are not changed
+     * @return true if the line is accepted
+     */
+    public boolean accept(ByteBuffer line) {
+        if (line.hasArray()) {
+            return accept(line.array(), line.arrayOffset() + line.position(), line.remaining());
+        }
+
+        int found = 0;
+        int state = 0;
+        for (int i = line.position(), end = line.limit(); i < end; i++) {
+            state = transitions[(state << 8) | (line.get(i) & 0xff)];
+            found |= outputs[state];
+            if (isDecided(found)) {
+                break;
+            }
+        }
+        return isAccepted(found);
+    }
+
+    /**
+     * Return whether the line is accepted.
+     *
+     * @param array
+     *            the array holding the line
+     * @param offset
+     *            offset of the line in the array
+     * @param length
+     *            length of the line
+     * @return true if the line is accepted
+     */
+    public boolean accept(byte[] array, int offset, int length) {
+        int found = 0;
+        int state = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            state = transitions[(state << 8) | (array[i] & 0xff)];
+            found |= outputs[state];
+            if (isDecided(found)) {
+                break;
+            }
+        }
+        return isAccepted(found);
+    }
+
+    /**
+     * Return whether the rest of the line can't change the result.
+     */
+    private boolean isDecided(int found) {
+        return (found & EXCLUDE) != 0 || (found == INCLUDE && !hasExcludes);
+    }
+
+    private boolean isAccepted(int found) {
+        return (found & EXCLUDE) == 0 && (!hasIncludes || (found & INCLUDE) != 0);
+    }
+}
@@ -0,0 +1,56 @@
+package com.netease.util.tailer;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Free list of the pooled lines of a tailer.
+ * <p>
+ * The lines are kept in a lock-free stack. Lines are released from any
+ * thread, but only taken by the tailer thread, so a line can't be taken and
+ * released again between the read of the top and its replacement, and the
+ * stack is not exposed to the ABA problem.
+ */
+final class LinePool {
+    private final AtomicReference<PooledLine> top = new AtomicReference<PooledLine>();
+
+    /**
+     * Take a free line, or create one if there is none. Only called from the
+     * tailer thread.
+     * 
+     * @return the line
+     */
+    PooledLine acquire() {
+        while (true) {
+            PooledLine line = top.get();
+            if (line == null) {
+                return new PooledLine(this);
+            }
+            if (top.compareAndSet(line, line.next)) {
+                line.next = null;
+                line.free = false;
+                return line;
+            }
+        }
+    }
+
+    /**
+     * Return a line to the free list.
+     * 
+     * @param line
+     *            the line
+     */
+    void release(PooledLine line) {
+        if (line.free) {
+            throw new IllegalStateException("line already recycled");
+        }
+        line.free = true;
+
+        while (true) {
+            PooledLine current = top.get();
+            line.next = current;
+            if (top.compareAndSet(current, line)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.netease.util.tailer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits the bytes read from a file into lines.
+ * <p>
+ * Newlines are searched directly in the buffer passed to
+ * {@link #scan(ByteBuffer, long, LineHandler)}, and every complete line is
+ * handed out as a view of that buffer without copying. Only the trailing
+ * partial line of a buffer is copied into an internal buffer, which grows on
+ * demand and is reused, so that it can be completed by the next buffer.
+ * <p>
+ * Lines are terminated by <code>'\n'</code>, a <code>'\r'</code> right before
+ * the terminator is stripped.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class LineScanner {
+    /**
+     * Initial capacity of the partial line buffer.
+     */
+    private static final int INITIAL_PARTIAL_SIZE = 256;
+
+    /**
+     * Receiver of the lines found by the scanner.
+     */
+    public interface LineHandler {
+        /**
+         * Handles a line.
+         * <p>
+         * <b>Note:</b> the content of the buffer is only valid during the
+         * call, it must be copied if it is needed afterwards.
+         *
+         * @param line
+         *            the line, between the position and the limit of the
+         *            buffer, without the line terminator
+         * @param position
+         *            the file position right after the line terminator
+         */
+        void handleLine(ByteBuffer line, long position);
+    }
+
+    /**
+     * Bytes of the trailing partial line.
+     */
+    private byte[] partial = new byte[INITIAL_PARTIAL_SIZE];
+
+    /**
+     * Length of the trailing partial line.
+     */
+    private int partialLength = 0;
+
+    /**
+     * View of the partial line buffer.
+     */
+    private ByteBuffer partialView = ByteBuffer.wrap(partial);
+
+    /**
+     * The buffer the current view was created for.
+     */
+    private ByteBuffer viewSource;
+
+    /**
+     * Reusable view of the scanned buffer.
+     */
+    private ByteBuffer view;
+
+    /**
+     * Scans the buffer for lines, from its position to its limit. The
+     * position of the buffer is not changed.
+     *
+     * @param data
+     *            the bytes to scan
+     * @param position
+     *            the file position of the first byte to scan
+     * @param handler
+     *            the handler of the complete lines
+     */
+    public void scan(ByteBuffer data, long position, LineHandler handler) {
+        int begin = data.position();
+        int end = data.limit();
+        int start = begin;
+
+        if (data.hasArray()) {
+            byte[] array = data.array();
+            int base = data.arrayOffset();
+            for (int i = begin; i < end; i++) {
+                if (array[base + i] == '\n') {
+                    emit(data, start, i, position + (i + 1 - begin), handler);
+                    start = i + 1;
+                }
+            }
+        } else {
+            for (int i = begin; i < end; i++) {
+                if (data.get(i) == '\n') {
+                    emit(data, start, i, position + (i + 1 - begin), handler);
+                    start = i + 1;
+                }
+            }
+        }
+
+        if (start < end) {
+            append(data, start, end);
+        }
+    }
+
+    /**
+     * Return the length of the partial line kept from the previous scans.
+     *
+     * @return length of the partial line in bytes
+     */
+    public int getPartialLength() {
+        return partialLength;
+    }
+
+    /**
+     * Discard the partial line, e.g. after the file is rotated.
+     */
+    public void reset() {
+        partialLength = 0;
+        // don't keep the last scanned buffer, which may be a mapping
+        viewSource = null;
+        view = null;
+    }
+
+    private void emit(ByteBuffer data, int start, int end, long position, LineHandler handler) {
+        ByteBuffer line;
+        if (partialLength > 0) {
+            append(data, start, end);
+            line = partialView;
+            line.clear();
+            line.limit(partialLength);
+            partialLength = 0;
+        } else {
+            line = viewOf(data);
+            line.clear();
+            line.position(start);
+            line.limit(end);
+        }
+
+        // strip the '\r' of "\r\n"
+        int limit = line.limit();
+        if (limit > line.position() && line.get(limit - 1) == '\r') {
+            line.limit(limit - 1);
+        }
+
+        handler.handleLine(line, position);
+    }
+
+    private void append(ByteBuffer data, int start, int end) {
+        int length = end - start;
+        int required = partialLength + length;
+        if (required > partial.length) {
+            byte[] grown = new byte[Math.max(partial.length * 2, required)];
+            System.arraycopy(partial, 0, grown, 0, partialLength);
+            partial = grown;
+            partialView = ByteBuffer.wrap(partial);
+        }
+
+        if (data.hasArray()) {
+            System.arraycopy(data.array(), data.arrayOffset() + start, partial, partialLength, length);
+        } else {
+            ByteBuffer source = viewOf(data);
+            source.clear();
+            source.position(start);
+            source.limit(end);
+            source.get(partial, partialLength, length);
+        }
+        partialLength = required;
+    }
+
+    private ByteBuffer viewOf(ByteBuffer data) {
+        if (viewSource != data) {
+            view = data.duplicate();
+            viewSource = data;
+        }
+        return view;
+    }
+}
@@ -0,0 +1,257 @@
+package com.netease.util.tailer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Groups lines into records, e.g. a log message and the lines of its stack
+ * trace, before they are passed on.
+ * <p>
+ * A line which starts a record, as told by a {@link RecordStart}, completes
+ * the pending record; any other line is a continuation and is appended to it,
+ * joined by <code>'\n'</code>. The lines are only copied, never decoded. A
+ * record is also completed when it reaches the maximum number of lines, when
+ * the next line would make it exceed the maximum size, and when no line is
+ * appended to it for the flush time, as checked by
+ * {@link #flushIfQuiet(long)}.
+ * <p>
+ * The position passed on with a record is the position right after its last
+ * line, and {@link #getPendingStart()} tells where the pending record starts,
+ * so that a checkpoint never points into the middle of a record.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class MultilineAggregator implements LineScanner.LineHandler {
+    /**
+     * Initial capacity of the record buffer.
+     */
+    private static final int INITIAL_SIZE = 1024;
+
+    /**
+     * Tells which lines start a record.
+     */
+    public interface RecordStart {
+        /**
+         * Return whether the line starts a record.
+         *
+         * @param line
+         *            the line, between the position and the limit of the
+         *            buffer, which must not be changed
+         * @return true if the line starts a record, false if it continues the
+         *         previous one
+         */
+        boolean isRecordStart(ByteBuffer line);
+    }
+
+    /**
+     * Return the record start which continues a record with the lines starting
+     * with a space or a tab, as the frames of a Java stack trace do.
+     *
+     * @return the record start
+     */
+    public static RecordStart notIndented() {
+        return new RecordStart() {
+            public boolean isRecordStart(ByteBuffer line) {
+                if (!line.hasRemaining()) {
+                    return true;
+                }
+                byte first = line.get(line.position());
+                return first != ' ' && first != '\t';
+            }
+        };
+    }
+
+    /**
+     * Return the record start which starts a record with the lines starting
+     * with the given bytes, e.g. the leading digits of a timestamp, and
+     * continues it with any other line.
+     *
+     * @param prefix
+     *            the first bytes of a record
+     * @return the record start
+     */
+    public static RecordStart prefix(byte[] prefix) {
+        final byte[] bytes = prefix.clone();
+        return new RecordStart() {
+            public boolean isRecordStart(ByteBuffer line) {
+                if (line.remaining() < bytes.length) {
+                    return false;
+                }
+                int start = line.position();
+                for (int i = 0; i < bytes.length; i++) {
+                    if (line.get(start + i) != bytes[i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    private final LineScanner.LineHandler handler;
+
+    private final RecordStart recordStart;
+
+    private final int maxLines;
+
+    private final int maxBytes;
+
+    private final long flushMillis;
+
+    private byte[] record = new byte[INITIAL_SIZE];
+
+    private ByteBuffer recordView = ByteBuffer.wrap(record);
+
+    /**
+     * Length of the pending record.
+     */
+    private int length = 0;
+
+    /**
+     * Number of lines of the pending record.
+     */
+    private int lines = 0;
+
+    /**
+     * Position of the first byte not passed on, where the pending record
+     * starts.
+     */
+    private long start = 0;
+
+    /**
+     * Position right after the last line of the pending record.
+     */
+    private long end = 0;
+
+    /**
+     * Whether a line was appended since the last check for quiet.
+     */
+    private boolean appended = false;
+
+    /**
+     * Time of the last check which found an appended line.
+     */
+    private long activeTime = 0;
+
+    /**
+     * Creates an aggregator.
+     *
+     * @param handler
+     *            the handler of the records
+     * @param recordStart
+     *            tells which lines start a record
+     * @param maxLines
+     *            maximum number of lines of a record
+     * @param maxBytes
+     *            maximum size of a record, unless its first line is larger
+     * @param flushMillis
+     *            time without a new line after which the pending record is
+     *            passed on
+     */
+    public MultilineAggregator(LineScanner.LineHandler handler, RecordStart recordStart, int maxLines, int maxBytes,
+            long flushMillis) {
+        this.handler = handler;
+        this.recordStart = recordStart;
+        this.maxLines = maxLines;
+        this.maxBytes = maxBytes;
+        this.flushMillis = flushMillis;
+    }
+
+    public void handleLine(ByteBuffer line, long position) {
+        if (lines > 0 && (length + 1 + line.remaining() > maxBytes || recordStart.isRecordStart(line))) {
+            flush();
+        }
+
+        if (lines > 0) {
+            ensureCapacity(length + 1);
+            record[length++] = '\n';
+        }
+        int lineLength = line.remaining();
+        ensureCapacity(length + lineLength);
+        if (line.hasArray()) {
+            System.arraycopy(line.array(), line.arrayOffset() + line.position(), record, length, lineLength);
+        } else {
+            int mark = line.position();
+            line.get(record, length, lineLength);
+            line.position(mark);
+        }
+        length += lineLength;
+        lines++;
+        end = position;
+        appended = true;
+
+        if (lines >= maxLines) {
+            flush();
+        }
+    }
+
+    /**
+     * Pass on the pending record, if any.
+     */
+    public void flush() {
+        if (lines == 0) {
+            return;
+        }
+
+        ByteBuffer view = recordView;
+        view.clear();
+        view.limit(length);
+        length = 0;
+        lines = 0;
+        start = end;
+        handler.handleLine(view, end);
+    }
+
+    /**
+     * Pass on the pending record if no line was appended to it for the flush
+     * time. This is to be called regularly, e.g. on every poll of the file.
+     *
+     * @param now
+     *            the current time in milliseconds
+     * @return true if a record was passed on
+     */
+    public boolean flushIfQuiet(long now) {
+        if (appended) {
+            appended = false;
+            activeTime = now;
+            return false;
+        }
+        if (lines > 0 && now - activeTime >= flushMillis) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Return the position where the pending record starts.
+     *
+     * @return the position, -1 if there is no pending record
+     */
+    public long getPendingStart() {
+        return lines > 0 ? start : -1;
+    }
+
+    /**
+     * Discard the pending record, and set the position of the next line, e.g.
+     * after the file is rotated.
+     *
+     * @param position
+     *            the position where the next line starts
+     */
+    public void reset(long position) {
+        length = 0;
+        lines = 0;
+        start = position;
+        end = position;
+        appended = false;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > record.length) {
+            byte[] grown = new byte[Math.max(record.length * 2, required)];
+            System.arraycopy(record, 0, grown, 0, length);
+            record = grown;
+            recordView = ByteBuffer.wrap(record);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.netease.util.tailer;
+
+/**
+ * Delay between polls of a file, backing off exponentially after consecutive
+ * empty polls of the open file, up to a ceiling, and returning to the minimum
+ * as soon as data is found, or while the file is missing.
+ */
+final class PollBackoff {
+    private final long minDelayMillis;
+
+    private final long maxDelayMillis;
+
+    private long delayMillis;
+
+    /**
+     * Creates the backoff, which is disabled if the maximum delay is not above
+     * the minimum delay.
+     * 
+     * @param minDelayMillis
+     *            the minimum delay
+     * @param maxDelayMillis
+     *            the maximum delay
+     */
+    PollBackoff(long minDelayMillis, long maxDelayMillis) {
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = Math.max(minDelayMillis, maxDelayMillis);
+        this.delayMillis = minDelayMillis;
+    }
+
+    /**
+     * Update the delay after a poll of the open file.
+     * 
+     * @param foundData
+     *            whether the poll found data
+     */
+    void next(boolean foundData) {
+        if (foundData) {
+            reset();
+        } else if (delayMillis < maxDelayMillis) {
+            delayMillis = Math.min(maxDelayMillis, Math.max(1, delayMillis) * 2);
+        }
+    }
+
+    /**
+     * Return to the minimum delay, e.g. while the file is missing, so that it
+     * is read soon after it appears.
+     */
+    void reset() {
+        delayMillis = minDelayMillis;
+    }
+
+    /**
+     * Return the current delay.
+     * 
+     * @return the delay in milliseconds
+     */
+    long current() {
+        return delayMillis;
+    }
+}
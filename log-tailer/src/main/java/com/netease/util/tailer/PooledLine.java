@@ -0,0 +1,118 @@
+package com.netease.util.tailer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A line handed to a {@link PooledLineListener}, which may be kept after the
+ * call and must be returned with {@link #recycle()} once it is not needed
+ * anymore.
+ * <p>
+ * The lines are taken from a free list of the tailer and reused, so that
+ * tailing allocates nothing once enough lines are in circulation. A line must
+ * not be used after it is recycled.
+ */
+public final class PooledLine {
+    private static final int INITIAL_SIZE = 128;
+
+    private final LinePool pool;
+
+    private byte[] bytes = new byte[INITIAL_SIZE];
+
+    private int length;
+
+    private long position;
+
+    private long lastModified;
+
+    /**
+     * Next free line, set while the line is in the pool.
+     */
+    PooledLine next;
+
+    /**
+     * Whether the line is in the pool.
+     */
+    boolean free = false;
+
+    PooledLine(LinePool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Copy the line from the position to the limit of the buffer, the
+     * position of the buffer is not changed.
+     */
+    void set(ByteBuffer line, long position, long lastModified) {
+        int remaining = line.remaining();
+        if (bytes.length < remaining) {
+            bytes = new byte[Math.max(bytes.length * 2, remaining)];
+        }
+        if (line.hasArray()) {
+            System.arraycopy(line.array(), line.arrayOffset() + line.position(), bytes, 0, remaining);
+        } else {
+            int start = line.position();
+            line.get(bytes, 0, remaining);
+            line.position(start);
+        }
+        this.length = remaining;
+        this.position = position;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Return the array holding the bytes of the line, from 0 to
+     * {@link #getLength()}, without the line terminator.
+     *
+     * @return the bytes of the line
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Return the length of the line in bytes.
+     *
+     * @return the length
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Return the file position right after the line terminator.
+     *
+     * @return the position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Return the last modified time of the file when the line was read.
+     *
+     * @return last modified time
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Decode the line.
+     *
+     * @param charset
+     *            the charset of the file
+     * @return the line
+     */
+    public String toString(Charset charset) {
+        return new String(bytes, 0, length, charset);
+    }
+
+    /**
+     * Return the line to the free list of its tailer, it may be called from
+     * any thread.
+     */
+    public void recycle() {
+        pool.release(this);
+    }
+}
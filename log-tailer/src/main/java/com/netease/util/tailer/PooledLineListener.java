@@ -0,0 +1,22 @@
+package com.netease.util.tailer;
+
+/**
+ * Tailer listener which receives the lines as {@link PooledLine} holders,
+ * which it may keep after the call.
+ * <p>
+ * The tailer doesn't decode the lines for this kind of listener, so
+ * {@link #handle(String, long, long)} is never called.
+ */
+public interface PooledLineListener extends TailerListener {
+    /**
+     * Handles a line from a Tailer. The listener owns the line until it calls
+     * {@link PooledLine#recycle()}, lines which are not recycled are
+     * collected by the GC instead of being reused.
+     * <p>
+     * <b>Note:</b> this is called from the tailer thread.
+     * 
+     * @param line
+     *            the line
+     */
+    void handle(PooledLine line);
+}
@@ -0,0 +1,73 @@
+package com.netease.util.tailer;
+
+/**
+ * Token bucket capping the read bandwidth shared by tailers. The bytes are
+ * taken after they are read, so a read may put the bucket into debt, which
+ * the following reads wait out; a read which must not wait takes its bytes
+ * all the same, and delays the others instead.
+ * <p>
+ * Instances are thread safe.
+ */
+final class ReadThrottle {
+    private final long bytesPerSecond;
+
+    /**
+     * Maximum number of tokens, one second of bandwidth.
+     */
+    private final long capacity;
+
+    /**
+     * Available bytes, negative while in debt.
+     */
+    private long tokens;
+
+    private long refillNanos;
+
+    /**
+     * Creates the throttle, with a full bucket.
+     * 
+     * @param bytesPerSecond
+     *            the maximum read bandwidth
+     */
+    ReadThrottle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = bytesPerSecond;
+        this.tokens = capacity;
+        this.refillNanos = System.nanoTime();
+    }
+
+    /**
+     * Return the time to wait before reading.
+     * 
+     * @return the delay in milliseconds, 0 if bytes are available
+     */
+    synchronized long delay() {
+        refill();
+        if (tokens > 0) {
+            return 0;
+        }
+        return Math.max(1, (1 - tokens) * 1000 / bytesPerSecond);
+    }
+
+    /**
+     * Take the bytes which were read.
+     * 
+     * @param bytes
+     *            number of bytes read
+     */
+    synchronized void take(long bytes) {
+        refill();
+        tokens -= bytes;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - refillNanos;
+        long added = (long) (elapsed * (double) bytesPerSecond / 1000000000L);
+        if (added > 0) {
+            tokens = Math.min(capacity, tokens + added);
+            // keep the remainder of the elapsed time
+            refillNanos = tokens == capacity ? now : refillNanos + (long) (added * 1000000000.0 / bytesPerSecond);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.netease.util.tailer;
+
+/**
+ * Tailer listener which is told which lines come from a rotated file.
+ * <p>
+ * After a rotation, the tailer keeps reading the rotated file while it follows
+ * the new one, until the rotated file has no new content for the quiet time
+ * of {@link TailerConfig#setDrainQuietMillis(long)}. The late lines of the
+ * rotated file are delivered between {@link #beginRotatedLines()} and
+ * {@link #endRotatedLines()}, and the lines of each file stay in order.
+ */
+public interface RotationListener extends TailerListener {
+    /**
+     * Called before late lines of the rotated file are delivered.
+     * <p>
+     * <b>Note:</b> this is called from the tailer thread.
+     */
+    void beginRotatedLines();
+
+    /**
+     * Called after late lines of the rotated file are delivered, the lines
+     * which follow are of the current file.
+     * <p>
+     * <b>Note:</b> this is called from the tailer thread.
+     */
+    void endRotatedLines();
+
+    /**
+     * Called when the rotated file is closed, no more lines of it are
+     * delivered.
+     * <p>
+     * <b>Note:</b> this is called from the tailer thread.
+     * 
+     * @param position
+     *            the position up to which the lines of the rotated file were
+     *            delivered.
+     */
+    void rotatedFileClosed(long position);
+}
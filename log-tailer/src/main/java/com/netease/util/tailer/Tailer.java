@@ -0,0 +1,1251 @@
+package com.netease.util.tailer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Utility class for tailing log file.
+ * <p>
+ * Based on <code>Tailer</code> from apache-commons-io library, and rewrite by
+ * adding inode and channel size check to make the tailer more robust to file
+ * rotating.
+ * 
+ * @author jiaozhihui@corp.netease.com
+ */
+public final class Tailer implements Runnable {
+    /**
+     * Open mode for RandomAccessFile.
+     */
+    private static final String RAF_MODE = "r";
+
+    /**
+     * Size of the buffer for reading.
+     */
+    private final int bufSize;
+
+    /**
+     * Buffer for reading, allocated when the tailer runs on its own thread.
+     */
+    private ByteBuffer inbufView;
+
+    /**
+     * Size of a mapped window, 0 if the file is not mapped.
+     */
+    private final int mapWindowSize;
+
+    /**
+     * Decodes the lines for plain listeners.
+     */
+    private final LineDecoder decoder;
+
+    /**
+     * Splits the read bytes into lines.
+     */
+    private LineScanner scanner = new LineScanner();
+
+    /**
+     * Passes the lines to the listener.
+     */
+    private final LineScanner.LineHandler lineHandler;
+
+    /**
+     * Collects the lines for a batch listener, null for other listeners.
+     */
+    private final BatchLineHandler batchHandler;
+
+    /**
+     * Selects the lines passed to the listener, null if every line is passed.
+     */
+    private final LineFilter lineFilter;
+
+    /**
+     * Passes the lines, or the records, to the filter or to the listener.
+     */
+    private final LineScanner.LineHandler recordHandler;
+
+    /**
+     * Groups the lines of the file into records, null if the lines are not
+     * grouped.
+     */
+    private MultilineAggregator aggregator;
+
+    /**
+     * The file which will be tailed.
+     */
+    private final File file;
+
+    /**
+     * The amount of time to wait for the file to be updated.
+     */
+    private final long delayMillis;
+
+    /**
+     * The delay between polls, backing off while the file is unchanged.
+     */
+    private final PollBackoff backoff;
+
+    /**
+     * How changes of the file are noticed.
+     */
+    private final TailerConfig.ChangeDetection changeDetection;
+
+    /**
+     * The maximum time to wait for a change event.
+     */
+    private final long safetyPollMillis;
+
+    /**
+     * Notifies changes of the file when the tailer runs on its own thread.
+     */
+    private volatile ChangeNotifier notifier;
+
+    /**
+     * Probes the inode of the file to detect rotation.
+     */
+    private final InodeProbe inodeProbe;
+
+    /**
+     * Stores the read position, null if it is not stored.
+     */
+    private final CheckpointStore checkpointStore;
+
+    /**
+     * Key of the file in the checkpoint store.
+     */
+    private final String checkpointKey;
+
+    /**
+     * Whether the rotated files written after the checkpoint are read first.
+     */
+    private final boolean catchUpRotated;
+
+    /**
+     * Whether the file is compressed as soon as it is rotated.
+     */
+    private final boolean compressOnRotate;
+
+    /**
+     * Reads the rotated files to catch up with, null if there are none.
+     */
+    private CatchUpReader catchUp;
+
+    /**
+     * Number of threads scanning the existing content, 0 to read it
+     * sequentially.
+     */
+    private final int backfillParallelism;
+
+    private final int backfillChunkSize;
+
+    private final boolean backfillOrdered;
+
+    /**
+     * Scans the existing content in parallel, null once it is delivered.
+     */
+    private Backfill backfill;
+
+    /**
+     * Pool scanning the backfilled chunks, the one of the manager polling the
+     * tailer, otherwise created by the first backfill.
+     */
+    private ForkJoinPool backfillPool;
+
+    /**
+     * Whether the tailer is polled by a manager, whose threads don't wait for
+     * the backfilled chunks.
+     */
+    private boolean managed = false;
+
+    /**
+     * The listener to notify of events when tailing.
+     */
+    private final TailerListener listener;
+
+    /**
+     * The tailer will run as long as this value is true.
+     */
+    private volatile boolean run = true;
+
+    /**
+     * The tailer will pause as long as this value is true.
+     */
+    private volatile boolean pause = false;
+
+    /**
+     * The file being read.
+     */
+    private RandomAccessFile reader;
+
+    /**
+     * True if the file was rotated and the new file is not opened yet.
+     */
+    private boolean reopenPending = false;
+
+    /**
+     * The old inode of the file.
+     */
+    private long lastInode = -1;
+
+    /**
+     * Last position the tailer has read.
+     */
+    private volatile long lastPosition = 0;
+
+    /**
+     * Time without new content after which a rotated file is closed, 0 to
+     * close it right away.
+     */
+    private final long drainQuietMillis;
+
+    /**
+     * The rotated file still being drained, null if there is none.
+     */
+    private RandomAccessFile drainReader;
+
+    /**
+     * Scanner of the rotated file, holding its partial line.
+     */
+    private LineScanner drainScanner;
+
+    /**
+     * Groups the lines of the rotated file, holding its pending record.
+     */
+    private MultilineAggregator drainAggregator;
+
+    /**
+     * Position up to which the lines of the rotated file were delivered.
+     */
+    private long drainPosition;
+
+    /**
+     * Last time the rotated file had new content.
+     */
+    private long drainActiveTime;
+
+    /**
+     * The listener of the lines of the rotated file, null if the listener
+     * doesn't want to be told.
+     */
+    private final RotationListener rotationListener;
+
+    /**
+     * Number of bytes read by the current poll.
+     */
+    private long readBytes = 0;
+
+    /**
+     * Number of lines passed to the listener by the current poll.
+     */
+    private long deliveredLines = 0;
+
+    /**
+     * Number of lines dropped by the filter in the current poll.
+     */
+    private long filteredLines = 0;
+
+    /**
+     * Time spent reading by the current poll.
+     */
+    private long readNanos = 0;
+
+    /**
+     * Time spent passing the read bytes to the listener by the current poll.
+     */
+    private long callbackNanos = 0;
+
+    /**
+     * Size of the file at the last check.
+     */
+    private long lastSize = 0;
+
+    /**
+     * Counters of the tailer, published once per poll.
+     */
+    private final TailerMetrics metrics;
+
+    /**
+     * Receives the metrics, null if they are not registered.
+     */
+    private final TailerMetricsRegistry metricsRegistry;
+
+    /**
+     * Last modified time of the file, probed once per read cycle and passed
+     * with every line of the cycle.
+     */
+    private long lastModified = 0;
+
+    /**
+     * Creates a Tailer for the given file, with a specified buffer size.
+     * 
+     * @param file
+     *            the file to follow
+     * @param listener
+     *            the TailerListener to use
+     * @param position
+     *            position where tailer should start
+     * @param delayMillis
+     *            the delay between checks of the file for new content in
+     *            milliseconds
+     * @param bufSize
+     *            buffer size
+     */
+    public Tailer(File file, TailerListener listener, long position, long delayMillis, int bufSize) {
+        this(file, listener, position, createConfig(delayMillis, bufSize));
+    }
+
+    /**
+     * Creates a Tailer for the given file, with the specified options.
+     * 
+     * @param file
+     *            the file to follow
+     * @param listener
+     *            the TailerListener to use
+     * @param position
+     *            position where tailer should start
+     * @param config
+     *            options of the tailer
+     */
+    public Tailer(File file, TailerListener listener, long position, TailerConfig config) {
+        this.file = file;
+        this.lastPosition = position;
+        this.delayMillis = config.getDelayMillis();
+        this.backoff = new PollBackoff(delayMillis, config.getMaxDelayMillis());
+        this.bufSize = config.getBufSize();
+        this.changeDetection = config.getChangeDetection();
+        this.safetyPollMillis = config.getSafetyPollMillis();
+        this.checkpointStore = config.getCheckpointStore();
+        this.checkpointKey = file.getAbsolutePath();
+        this.catchUpRotated = config.isCatchUpRotated();
+        this.compressOnRotate = config.isCompressOnRotate();
+        this.backfillParallelism = config.getBackfillParallelism();
+        this.backfillChunkSize = config.getBackfillChunkSize();
+        this.backfillOrdered = config.isBackfillOrdered();
+        this.inodeProbe = new InodeProbe(file, config.isNativeProbe());
+        this.mapWindowSize = config.getReadMode() == TailerConfig.ReadMode.MAPPED ? config.getMapWindowSize() : 0;
+        this.drainQuietMillis = config.getDrainQuietMillis();
+        this.decoder = new LineDecoder(config.getCharset());
+        this.rotationListener = listener instanceof RotationListener ? (RotationListener) listener : null;
+
+        // save and prepare the listener
+        this.listener = listener;
+        if (listener instanceof BatchTailerListener) {
+            this.batchHandler = new BatchLineHandler((BatchTailerListener) listener, config);
+            this.lineHandler = batchHandler;
+        } else if (listener instanceof ByteTailerListener) {
+            // raw bytes are wanted, skip decoding
+            this.batchHandler = null;
+            this.lineHandler = new ByteLineHandler((ByteTailerListener) listener);
+        } else if (listener instanceof PooledLineListener) {
+            this.batchHandler = null;
+            this.lineHandler = new PooledLineHandler((PooledLineListener) listener);
+        } else {
+            this.batchHandler = null;
+            this.lineHandler = new StringLineHandler();
+        }
+        this.lineFilter = config.getLineFilter();
+        this.recordHandler = lineFilter != null ? new FilterLineHandler() : lineHandler;
+        MultilineAggregator.RecordStart recordStart = config.getRecordStart();
+        if (recordStart != null) {
+            this.aggregator = new MultilineAggregator(recordHandler, recordStart, config.getMaxRecordLines(),
+                    config.getMaxRecordBytes(), config.getRecordFlushMillis());
+            this.drainAggregator = new MultilineAggregator(recordHandler, recordStart, config.getMaxRecordLines(),
+                    config.getMaxRecordBytes(), config.getRecordFlushMillis());
+        }
+        this.metrics = new TailerMetrics(file);
+        this.metricsRegistry = config.getMetricsRegistry();
+        this.listener.init(this);
+        if (metricsRegistry != null) {
+            metricsRegistry.register(metrics);
+        }
+    }
+
+    private static TailerConfig createConfig(long delayMillis, int bufSize) {
+        TailerConfig config = new TailerConfig();
+        config.setDelayMillis(delayMillis);
+        config.setBufSize(bufSize);
+        return config;
+    }
+
+    /**
+     * Allows the tailer to complete its current loop and return.
+     */
+    public void stop() {
+        this.run = false;
+
+        ChangeNotifier current = notifier;
+        if (current != null) {
+            current.wakeup();
+        }
+    }
+
+    /**
+     * Allows the tailer to complete its current loop and pause.
+     */
+    public void pause() {
+        this.pause = true;
+    }
+
+    /**
+     * Allows the tailer to continue its current loop.
+     */
+    public void resume() {
+        this.pause = false;
+    }
+
+    /**
+     * Return the file.
+     * 
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Return the charset of the file, e.g. for decoding the lines passed to a
+     * {@link ByteTailerListener}.
+     *
+     * @return the charset
+     */
+    public Charset getCharset() {
+        return decoder.getCharset();
+    }
+
+    /**
+     * Return the delay in milliseconds.
+     *
+     * @return the delay in milliseconds.
+     */
+    public long getDelay() {
+        return delayMillis;
+    }
+
+    /**
+     * Return the position up to which the lines of the current file were
+     * delivered.
+     * 
+     * @return the position
+     */
+    public long getPosition() {
+        return lastPosition;
+    }
+
+    /**
+     * Return the number of polls made, i.e. checks of the file.
+     * 
+     * @return the number of polls
+     */
+    public long getPollCount() {
+        return metrics.getPollCount();
+    }
+
+    /**
+     * Return the number of polls which found new content.
+     * 
+     * @return the number of polls
+     */
+    public long getDataPollCount() {
+        return metrics.getPollCount() - metrics.getEmptyPollCount();
+    }
+
+    /**
+     * Return the number of lines, or records, accepted by the line filter.
+     * 
+     * @return the number of lines, 0 if there is no filter
+     */
+    public long getPassedLineCount() {
+        return lineFilter != null ? metrics.getLinesDelivered() : 0;
+    }
+
+    /**
+     * Return the number of lines, or records, dropped by the line filter.
+     * 
+     * @return the number of lines, 0 if there is no filter
+     */
+    public long getFilteredLineCount() {
+        return metrics.getLinesFiltered();
+    }
+
+    /**
+     * Return the metrics of the tailer.
+     * 
+     * @return the metrics
+     */
+    public TailerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Return the delay before the next poll, which is above the configured
+     * delay while the backoff of an unchanged file is in effect.
+     * 
+     * @return the delay in milliseconds
+     */
+    long getCurrentDelay() {
+        return backoff.current();
+    }
+
+    /**
+     * Return the number of bytes read by the last poll.
+     * 
+     * @return number of bytes
+     */
+    long getReadBytes() {
+        return readBytes;
+    }
+
+    /**
+     * Follows changes in the file, calling the TailerListener's handle method
+     * for each new line.
+     */
+    public void run() {
+        if (inbufView == null) {
+            inbufView = ByteBuffer.allocate(bufSize);
+        }
+
+        // watch before the first poll, so no change is missed
+        ChangeNotifier notifier = ChangeNotifier.create(file, changeDetection, safetyPollMillis);
+        this.notifier = notifier;
+        Exception failure = null;
+        try {
+            while (run) {
+                if (!poll(inbufView, Long.MAX_VALUE)) {
+                    notifier.await(backoff.current());
+                }
+            }
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            notifier.close();
+        }
+
+        finish(failure);
+    }
+
+    /**
+     * Checks the file once: opens it if needed, handles rotation and reads at
+     * most <code>maxBytes</code> of new content.
+     * 
+     * @param buffer
+     *            buffer for reading, backed by an array
+     * @param maxBytes
+     *            maximum number of bytes to read
+     * @return true if there is more content to read right away
+     * @throws java.io.IOException
+     *             if an I/O error occurs.
+     */
+    boolean poll(ByteBuffer buffer, long maxBytes) throws IOException {
+        readBytes = 0;
+        boolean more = check(buffer, maxBytes);
+        if (catchUp == null && backfill == null && flushQuietRecord(aggregator)) {
+            checkpoint();
+        }
+
+        if (reader == null || reopenPending || pause) {
+            // no empty poll of the file, which may appear any time
+            backoff.reset();
+        } else {
+            backoff.next(readBytes > 0);
+        }
+        publishMetrics();
+        return more;
+    }
+
+    /**
+     * Publish the counts of the poll.
+     */
+    private void publishMetrics() {
+        metrics.addPoll(readBytes, deliveredLines, filteredLines, readNanos, callbackNanos);
+        deliveredLines = 0;
+        filteredLines = 0;
+        readNanos = 0;
+        callbackNanos = 0;
+        if (reader != null) {
+            try {
+                metrics.setLagBytes(getLagBytes());
+            } catch (IOException e) {
+                // keep the previous lag, the next read reports the failure
+            }
+        }
+    }
+
+    /**
+     * Return the number of bytes left to read, including the rest of the
+     * backfill and of the rotated files to catch up with.
+     */
+    private long getLagBytes() throws IOException {
+        // the size is only probed by the sequential reads, the file keeps
+        // growing meanwhile
+        long size = backfill != null || catchUp != null ? Math.max(lastSize, reader.getChannel().size()) : lastSize;
+        if (backfill != null) {
+            // and the lines appended since the backfill started
+            return backfill.getEnd() - backfill.getDeliveredPosition() + Math.max(0, size - backfill.getEnd());
+        }
+        long lag = Math.max(0, size - lastPosition);
+        if (catchUp != null) {
+            // the current file is read from its start afterwards
+            lag += catchUp.getRemainingBytes();
+        }
+        return lag;
+    }
+
+    private boolean check(ByteBuffer buffer, long maxBytes) throws IOException {
+        if (reader == null && !open()) {
+            return false;
+        }
+
+        if (pause) {
+            return false;
+        }
+
+        if (catchUp != null) {
+            return catchUp(maxBytes);
+        }
+
+        if (backfill != null) {
+            return backfill(maxBytes);
+        }
+
+        // the late lines of the rotated file go first
+        boolean more = drainReader != null && drain(buffer, maxBytes);
+
+        if (reopenPending) {
+            return reopen() || more;
+        }
+
+        // the rotated file and the current file share the bytes of the poll
+        long budget = maxBytes - readBytes;
+        if (budget <= 0) {
+            return true;
+        }
+
+        long inode = inodeProbe.probe(reader);
+        long size = inodeProbe.getSize();
+        lastSize = size;
+        long readPosition = lastPosition + scanner.getPartialLength();
+
+        if (inode != lastInode) {
+            // new file created
+            if (size > readPosition) {
+                // old file updated, read the update and discard the read
+                // position after rotation
+                lastModified = inodeProbe.getLastModified();
+                lastPosition = readLines(reader, scanner, handlerOf(aggregator), buffer, budget);
+                checkpoint();
+                if (lastPosition + scanner.getPartialLength() < size) {
+                    // rotate after the old file is read to its end
+                    return true;
+                }
+            }
+
+            // file was rotated
+            metrics.addRotation();
+            if (drainQuietMillis <= 0) {
+                // no late line can continue the record
+                flushRecord(aggregator);
+            }
+            listener.fileRotated();
+            startDrain(buffer);
+            reopenPending = true;
+            return reopen() || more;
+        } else if (size > readPosition) {
+            // old file changed, doesn't need to update lastInode
+            lastModified = inodeProbe.getLastModified();
+            lastPosition = readLines(reader, scanner, handlerOf(aggregator), buffer, budget);
+            checkpoint();
+            return lastPosition + scanner.getPartialLength() < size || more;
+        } else {
+            // file not changed
+            return more;
+        }
+    }
+
+    /**
+     * Keep reading the rotated file in the following polls, until it has no
+     * new content for the quiet time.
+     */
+    private void startDrain(ByteBuffer buffer) throws IOException {
+        if (drainQuietMillis <= 0) {
+            return;
+        }
+
+        if (drainReader != null) {
+            // rotated again before the previous file is quiet
+            drainPosition = readLines(drainReader, drainScanner, handlerOf(drainAggregator), buffer, Long.MAX_VALUE);
+            closeDrain();
+        }
+
+        // the rotated file keeps its partial line and its pending record
+        LineScanner spare = drainScanner != null ? drainScanner : new LineScanner();
+        drainScanner = scanner;
+        scanner = spare;
+        MultilineAggregator spareAggregator = drainAggregator;
+        drainAggregator = aggregator;
+        aggregator = spareAggregator;
+        drainReader = reader;
+        drainPosition = lastPosition;
+        drainActiveTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Read the late lines of the rotated file, or close it once it is quiet.
+     * 
+     * @return true if there is more content to read right away
+     */
+    private boolean drain(ByteBuffer buffer, long maxBytes) throws IOException {
+        long now = System.currentTimeMillis();
+        long size = drainReader.getChannel().size();
+        long readPosition = drainPosition + drainScanner.getPartialLength();
+        if (size > readPosition) {
+            if (rotationListener != null) {
+                rotationListener.beginRotatedLines();
+            }
+            lastModified = now;
+            drainPosition = readLines(drainReader, drainScanner, handlerOf(drainAggregator), buffer, maxBytes);
+            if (rotationListener != null) {
+                rotationListener.endRotatedLines();
+            }
+            drainActiveTime = now;
+            return drainPosition + drainScanner.getPartialLength() < size;
+        }
+
+        if (now - drainActiveTime >= drainQuietMillis) {
+            closeDrain();
+        }
+        return false;
+    }
+
+    private void closeDrain() {
+        if (drainReader != reader) {
+            closeQuietly(drainReader);
+        }
+        drainReader = null;
+        drainScanner.reset();
+        if (drainAggregator != null && drainAggregator.getPendingStart() >= 0) {
+            // no late line can continue the record anymore
+            if (rotationListener != null) {
+                rotationListener.beginRotatedLines();
+            }
+            flushRecord(drainAggregator);
+            if (rotationListener != null) {
+                rotationListener.endRotatedLines();
+            }
+        }
+        if (rotationListener != null) {
+            rotationListener.rotatedFileClosed(drainPosition);
+        }
+    }
+
+    /**
+     * Marks the tailer as polled by a manager, which shares its pool for the
+     * backfills.
+     * 
+     * @param pool
+     *            the pool of the manager
+     */
+    void manage(ForkJoinPool pool) {
+        this.backfillPool = pool;
+        this.managed = true;
+    }
+
+    /**
+     * Returns whether the tailer is stopped.
+     * 
+     * @return true if the tailer is stopped
+     */
+    boolean isStopped() {
+        return !run;
+    }
+
+    /**
+     * Closes the file and notifies the listener that the tailer is stopped or
+     * failed.
+     * 
+     * @param failure
+     *            the failure, null if the tailer is stopped
+     */
+    void finish(Exception failure) {
+        if (catchUp == null) {
+            // the pending record is read again from its start
+            lastPosition = recordAligned(lastPosition);
+        }
+        closeQuietly(reader);
+        reader = null;
+        closeQuietly(drainReader);
+        drainReader = null;
+        closeQuietly(catchUp);
+        catchUp = null;
+        if (backfill != null) {
+            backfill.close();
+            backfill = null;
+        }
+        if (backfillPool != null && !managed) {
+            backfillPool.shutdownNow();
+        }
+        if (metricsRegistry != null) {
+            metricsRegistry.unregister(metrics);
+        }
+
+        if (failure == null) {
+            listener.stop();
+        } else {
+            listener.handle(failure);
+        }
+    }
+
+    private boolean open() throws IOException {
+        try {
+            reader = new RandomAccessFile(file, RAF_MODE);
+        } catch (FileNotFoundException e) {
+            metrics.addFileNotFound();
+            listener.fileNotFound();
+            return false;
+        }
+
+        // last modified and last position already set in constructor
+        lastInode = inodeProbe.getInode();
+        if (checkpointStore != null) {
+            // resume from the checkpoint if the file is still the same
+            CheckpointStore.Checkpoint checkpoint = checkpointStore.get(checkpointKey);
+            if (checkpoint != null && checkpoint.getInode() == lastInode && checkpoint.getPosition() <= reader.length()) {
+                lastPosition = checkpoint.getPosition();
+            } else if (checkpoint != null && catchUpRotated && checkpoint.getInode() != lastInode) {
+                // rotated meanwhile, the current file is read after the
+                // rotated ones
+                catchUp = CatchUpReader.create(file, checkpoint, compressOnRotate);
+                if (catchUp != null) {
+                    lastPosition = 0;
+                }
+            }
+        }
+        reader.seek(lastPosition);
+
+        long length = reader.length();
+        lastSize = length;
+        if (backfillParallelism > 0 && catchUp == null && length - lastPosition >= 2L * backfillChunkSize) {
+            // only plain listeners get the lines decoded by the workers
+            Charset charset = lineHandler instanceof StringLineHandler && aggregator == null ? decoder.getCharset()
+                    : null;
+            if (backfillPool == null) {
+                backfillPool = new ForkJoinPool(backfillParallelism);
+            }
+            backfill = new Backfill(reader.getChannel(), lastPosition, length, backfillChunkSize, backfillPool,
+                    backfillParallelism, backfillOrdered, charset, lineFilter);
+        }
+        if (aggregator != null) {
+            aggregator.reset(catchUp != null ? catchUp.getPosition() : lastPosition);
+        }
+        return true;
+    }
+
+    /**
+     * Read the lines of the rotated files to catch up with, at most
+     * <code>maxBytes</code>.
+     * 
+     * @return true as the current file is to be read afterwards
+     */
+    private boolean catchUp(long maxBytes) throws IOException {
+        lastModified = catchUp.getLastModified();
+        long start = catchUp.getPosition();
+        long pos = start;
+        ByteBuffer data = null;
+        long time = System.nanoTime();
+        while (run && pos - start < maxBytes && (data = catchUp.read()) != null) {
+            long read = System.nanoTime();
+            readNanos += read - time;
+            scanner.scan(data, pos, handlerOf(aggregator));
+            pos += data.remaining();
+            readBytes += data.remaining();
+            time = System.nanoTime();
+            callbackNanos += time - read;
+        }
+        readNanos += System.nanoTime() - time;
+
+        if (batchHandler != null) {
+            batchHandler.flush();
+        }
+        if (checkpointStore != null) {
+            checkpointStore.update(checkpointKey, catchUp.getInode(), recordAligned(pos - scanner.getPartialLength()),
+                    catchUp.getLastModified());
+        }
+
+        if (data == null && run) {
+            // the rotated file is read to its end
+            scanner.reset();
+            flushRecord(aggregator);
+            metrics.addRotation();
+            listener.fileRotated();
+            if (!catchUp.next()) {
+                catchUp = null;
+                checkpoint();
+            }
+            if (aggregator != null) {
+                aggregator.reset(catchUp != null ? catchUp.getPosition() : lastPosition);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deliver the lines of the backfilled chunks, at least one chunk and at
+     * most <code>maxBytes</code> unless a chunk is larger, and switch to the
+     * sequential reads once all of them are delivered. Under a manager only
+     * the chunks already scanned are delivered, the others are left to the
+     * next turn.
+     * 
+     * @return true as there is more to read
+     */
+    private boolean backfill(long maxBytes) throws IOException {
+        lastModified = inodeProbe.getLastModified();
+        long delivered = 0;
+        Backfill.Chunk chunk = null;
+        LineScanner.LineHandler handler = handlerOf(aggregator);
+        long time = System.nanoTime();
+        while (run && delivered < maxBytes && (chunk = backfill.next(!managed)) != null) {
+            long read = System.nanoTime();
+            readNanos += read - time;
+            if (aggregator != null && !backfillOrdered) {
+                // the chunk doesn't follow the previous one
+                flushRecord(aggregator);
+                aggregator.reset(chunk.getStart());
+            }
+            if (chunk.isDecoded()) {
+                // filtered by the workers
+                deliveredLines += chunk.size();
+                filteredLines += chunk.getFilteredCount();
+            }
+            ByteBuffer view = null;
+            for (int i = 0; i < chunk.size(); i++) {
+                String line = chunk.getLine(i);
+                if (line != null) {
+                    listener.handle(line, chunk.getPosition(i), lastModified);
+                } else {
+                    if (view == null) {
+                        view = chunk.newView();
+                    }
+                    chunk.getBytes(i, view);
+                    handler.handleLine(view, chunk.getPosition(i));
+                }
+            }
+            if (batchHandler != null) {
+                batchHandler.flush();
+            }
+
+            delivered += chunk.getLength();
+            readBytes += chunk.getLength();
+            time = System.nanoTime();
+            callbackNanos += time - read;
+        }
+        readNanos += System.nanoTime() - time;
+
+        lastPosition = backfill.getDeliveredPosition();
+        if (run && backfill.isDone()) {
+            // caught up, follow the file sequentially
+            backfill.close();
+            backfill = null;
+            reader.seek(lastPosition);
+        }
+        checkpoint();
+        return true;
+    }
+
+    private void checkpoint() {
+        if (checkpointStore != null) {
+            checkpointStore.update(checkpointKey, lastInode, recordAligned(lastPosition), lastModified);
+        }
+    }
+
+    /**
+     * Return the position, or the start of the pending record of the file if
+     * it is before.
+     */
+    private long recordAligned(long position) {
+        long pendingStart = aggregator != null ? aggregator.getPendingStart() : -1;
+        return pendingStart >= 0 && pendingStart < position ? pendingStart : position;
+    }
+
+    /**
+     * Return the handler of the lines scanned for the aggregator.
+     */
+    private LineScanner.LineHandler handlerOf(MultilineAggregator aggregator) {
+        return aggregator != null ? aggregator : recordHandler;
+    }
+
+    /**
+     * Pass on the pending record of the aggregator, if any.
+     */
+    private void flushRecord(MultilineAggregator aggregator) {
+        if (aggregator != null && aggregator.getPendingStart() >= 0) {
+            aggregator.flush();
+            if (batchHandler != null) {
+                batchHandler.flush();
+            }
+        }
+    }
+
+    /**
+     * Pass on the pending record of the aggregator if it stayed unchanged for
+     * the flush time.
+     * 
+     * @return true if a record was passed on
+     */
+    private boolean flushQuietRecord(MultilineAggregator aggregator) {
+        if (aggregator != null && aggregator.flushIfQuiet(System.currentTimeMillis())) {
+            if (batchHandler != null) {
+                batchHandler.flush();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean reopen() {
+        if (file.length() == 0) {
+            // file does not exist or have nothing
+            return false;
+        }
+
+        try {
+            /*
+             * make sure the file exist and have content, reopen the reader
+             * after rotation, ensure that the old file is closed iff we re-open
+             * it successfully
+             */
+            RandomAccessFile save = reader;
+            reader = new RandomAccessFile(file, RAF_MODE);
+            lastPosition = 0;
+            scanner.reset();
+            if (aggregator != null) {
+                aggregator.reset(0);
+            }
+            lastInode = inodeProbe.getInode();
+            reopenPending = false;
+            checkpoint();
+
+            /*
+             * close old file explicitly rather than relying on GC picking up
+             * previous RAF
+             */
+            if (save != drainReader) {
+                closeQuietly(save);
+            }
+            return true;
+        } catch (FileNotFoundException e) {
+            /*
+             * in this case we keep the previous reader and position values
+             * until the new file can be opened
+             */
+            metrics.addFileNotFound();
+            listener.fileNotFound();
+            return false;
+        }
+    }
+
+    /**
+     * Read new lines.
+     * 
+     * @param reader
+     *            The file to read
+     * @return The new position after the lines have been read
+     * @throws java.io.IOException
+     *             if an I/O error occurs.
+     */
+    protected long readLines(RandomAccessFile reader) throws IOException {
+        if (inbufView == null) {
+            inbufView = ByteBuffer.allocate(bufSize);
+        }
+        return readLines(reader, scanner, handlerOf(aggregator), inbufView, Long.MAX_VALUE);
+    }
+
+    private long readLines(RandomAccessFile reader, LineScanner scanner, LineScanner.LineHandler handler,
+            ByteBuffer buffer, long maxBytes) throws IOException {
+        long pos = reader.getFilePointer();
+        long limit = maxBytes > Long.MAX_VALUE - pos ? Long.MAX_VALUE : pos + maxBytes;
+        if (mapWindowSize > 0) {
+            pos = readMapped(reader, scanner, handler, pos, limit, buffer.capacity());
+        }
+
+        byte[] array = buffer.array();
+        int offset = buffer.arrayOffset();
+        int num;
+        long time = System.nanoTime();
+        while (run && pos < limit
+                && ((num = reader.read(array, offset, (int) Math.min(buffer.capacity(), limit - pos))) != -1)) {
+            long read = System.nanoTime();
+            readNanos += read - time;
+            buffer.clear();
+            buffer.limit(num);
+            scanner.scan(buffer, pos, handler);
+
+            pos += num;
+            readBytes += num;
+            time = System.nanoTime();
+            callbackNanos += time - read;
+        }
+        long read = System.nanoTime();
+        readNanos += read - time;
+
+        if (batchHandler != null) {
+            batchHandler.flush();
+            callbackNanos += System.nanoTime() - read;
+        }
+
+        // the partial line is kept by the scanner, the reader stays at the end
+        return pos - scanner.getPartialLength();
+    }
+
+    /**
+     * Scan the region to read through memory mappings, window by window,
+     * until less than a buffer is left.
+     * 
+     * @param reader
+     *            The file to read
+     * @param scanner
+     *            The scanner of the file
+     * @param handler
+     *            The handler of the lines
+     * @param pos
+     *            The position to start from
+     * @param limit
+     *            The position to stop at
+     * @param minLength
+     *            The minimum length of a window
+     * @return The position after the mapped region
+     * @throws java.io.IOException
+     *             if an I/O error occurs.
+     */
+    private long readMapped(RandomAccessFile reader, LineScanner scanner, LineScanner.LineHandler handler, long pos,
+            long limit, int minLength) throws IOException {
+        FileChannel channel = reader.getChannel();
+        long length;
+        while (run && (length = Math.min(channel.size(), limit) - pos) >= minLength) {
+            length = Math.min(mapWindowSize, length);
+            long time = System.nanoTime();
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+            long mapped = System.nanoTime();
+            readNanos += mapped - time;
+            scanner.scan(window, pos, handler);
+            callbackNanos += System.nanoTime() - mapped;
+
+            // the window is unmapped once it is collected
+            pos += length;
+            readBytes += length;
+        }
+
+        reader.seek(pos);
+        return pos;
+    }
+
+    /**
+     * Passes the lines accepted by the filter to the listener.
+     */
+    private final class FilterLineHandler implements LineScanner.LineHandler {
+        public void handleLine(ByteBuffer line, long position) {
+            if (lineFilter.accept(line)) {
+                lineHandler.handleLine(line, position);
+            } else {
+                filteredLines++;
+            }
+        }
+    }
+
+    /**
+     * Decodes the lines and passes them to the listener.
+     */
+    private final class StringLineHandler implements LineScanner.LineHandler {
+        public void handleLine(ByteBuffer line, long position) {
+            deliveredLines++;
+            listener.handle(decoder.decode(line), position, lastModified);
+        }
+    }
+
+    /**
+     * Passes the lines to the listener as they are.
+     */
+    private final class ByteLineHandler implements LineScanner.LineHandler {
+        private final ByteTailerListener byteListener;
+
+        ByteLineHandler(ByteTailerListener byteListener) {
+            this.byteListener = byteListener;
+        }
+
+        public void handleLine(ByteBuffer line, long position) {
+            deliveredLines++;
+            byteListener.handle(line, position, lastModified);
+        }
+    }
+
+    /**
+     * Copies the lines into pooled holders and passes them to the listener.
+     */
+    private final class PooledLineHandler implements LineScanner.LineHandler {
+        private final PooledLineListener pooledListener;
+        private final LinePool pool = new LinePool();
+
+        PooledLineHandler(PooledLineListener pooledListener) {
+            this.pooledListener = pooledListener;
+        }
+
+        public void handleLine(ByteBuffer line, long position) {
+            deliveredLines++;
+            PooledLine pooled = pool.acquire();
+            pooled.set(line, position, lastModified);
+            pooledListener.handle(pooled);
+        }
+    }
+
+    /**
+     * Collects the lines into batches and passes them to the listener.
+     */
+    private final class BatchLineHandler implements LineScanner.LineHandler {
+        private final BatchTailerListener batchListener;
+        private final LineBatch batch;
+        private final int maxLines;
+        private final int maxBytes;
+
+        BatchLineHandler(BatchTailerListener batchListener, TailerConfig config) {
+            this.batchListener = batchListener;
+            this.maxLines = config.getMaxBatchLines();
+            this.maxBytes = config.getMaxBatchBytes();
+            this.batch = new LineBatch(config.getCharset(), Math.min(maxLines, 256), Math.min(maxBytes, config.getBufSize()));
+        }
+
+        public void handleLine(ByteBuffer line, long position) {
+            if (batch.size() > 0 && batch.getByteCount() + line.remaining() > maxBytes) {
+                flush();
+            }
+
+            deliveredLines++;
+            batch.add(line, position);
+            if (batch.size() >= maxLines || batch.getByteCount() >= maxBytes) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.size() > 0) {
+                batch.setLastModified(lastModified);
+                batchListener.handle(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    protected void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException ioe) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,735 @@
+package com.netease.util.tailer;
+
+import java.nio.charset.Charset;
+
+/**
+ * Options of a tailer.
+ * <p>
+ * The options are read when the tailer is created, later changes have no
+ * effect on it.
+ */
+public class TailerConfig {
+    /**
+     * How the tailer reads the file.
+     */
+    public enum ReadMode {
+        /**
+         * Read into the buffer of the tailer.
+         */
+        STREAM,
+
+        /**
+         * Map the appended region of the file into memory and scan it
+         * directly, window by window. Appends smaller than the buffer size
+         * are still read into the buffer, as mapping them costs more than
+         * copying.
+         */
+        MAPPED
+    }
+
+    /**
+     * How a tailer running on its own thread notices changes of the file.
+     */
+    public enum ChangeDetection {
+        /**
+         * Check the file after every delay.
+         */
+        POLL,
+
+        /**
+         * Wait for inotify events of the directory of the file, only
+         * available on Linux, falls back to {@link #POLL} otherwise.
+         */
+        INOTIFY,
+
+        /**
+         * Wait for events of the directory of the file from a
+         * {@link java.nio.file.WatchService} shared by all the tailers, falls
+         * back to {@link #POLL} if the directory can't be watched.
+         */
+        WATCH_SERVICE
+    }
+
+    /**
+     * Default check interval.
+     */
+    static final long DEFAULT_DELAY_MILLIS = 100;
+
+    /**
+     * Default buffer size for reading.
+     */
+    static final int DEFAULT_BUFSIZE = 4096;
+
+    /**
+     * Default maximum number of lines of a batch.
+     */
+    static final int DEFAULT_MAX_BATCH_LINES = 1024;
+
+    /**
+     * Default maximum number of bytes of a batch.
+     */
+    static final int DEFAULT_MAX_BATCH_BYTES = 1024 * 1024;
+
+    /**
+     * Default maximum time to wait for a change event.
+     */
+    static final long DEFAULT_SAFETY_POLL_MILLIS = 1000;
+
+    /**
+     * Default size of a mapped window.
+     */
+    static final int DEFAULT_MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Default size of a backfilled chunk.
+     */
+    static final int DEFAULT_BACKFILL_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Default time without new content after which a rotated file is closed.
+     */
+    static final long DEFAULT_DRAIN_QUIET_MILLIS = 1000;
+
+    /**
+     * Default charset of the tailed file.
+     */
+    static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * Default maximum number of lines of a record.
+     */
+    static final int DEFAULT_MAX_RECORD_LINES = 500;
+
+    /**
+     * Default maximum size of a record.
+     */
+    static final int DEFAULT_MAX_RECORD_BYTES = 1024 * 1024;
+
+    /**
+     * Default time without a new line after which a pending record is passed
+     * on.
+     */
+    static final long DEFAULT_RECORD_FLUSH_MILLIS = 1000;
+
+    private long delayMillis = DEFAULT_DELAY_MILLIS;
+
+    private long maxDelayMillis = 0;
+
+    private int bufSize = DEFAULT_BUFSIZE;
+
+    private int maxBatchLines = DEFAULT_MAX_BATCH_LINES;
+
+    private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+
+    private ReadMode readMode = ReadMode.STREAM;
+
+    private int mapWindowSize = DEFAULT_MAP_WINDOW_SIZE;
+
+    private ChangeDetection changeDetection = ChangeDetection.POLL;
+
+    private long safetyPollMillis = DEFAULT_SAFETY_POLL_MILLIS;
+
+    private CheckpointStore checkpointStore;
+
+    private boolean nativeProbe = false;
+
+    private long drainQuietMillis = DEFAULT_DRAIN_QUIET_MILLIS;
+
+    private boolean catchUpRotated = false;
+
+    private boolean compressOnRotate = false;
+
+    private int backfillParallelism = 0;
+
+    private int backfillChunkSize = DEFAULT_BACKFILL_CHUNK_SIZE;
+
+    private boolean backfillOrdered = true;
+
+    private Charset charset = DEFAULT_CHARSET;
+
+    private MultilineAggregator.RecordStart recordStart;
+
+    private int maxRecordLines = DEFAULT_MAX_RECORD_LINES;
+
+    private int maxRecordBytes = DEFAULT_MAX_RECORD_BYTES;
+
+    private long recordFlushMillis = DEFAULT_RECORD_FLUSH_MILLIS;
+
+    private LineFilter lineFilter;
+
+    private TailerMetricsRegistry metricsRegistry;
+
+    /**
+     * Return the delay between checks of the file for new content.
+     * 
+     * @return the delay in milliseconds
+     */
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    /**
+     * Set the delay between checks of the file for new content, 100ms by
+     * default.
+     * 
+     * @param delayMillis
+     *            the delay in milliseconds
+     */
+    public void setDelayMillis(long delayMillis) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("delayMillis must not be negative: " + delayMillis);
+        }
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Return the maximum delay between checks of a file which stays unchanged.
+     * 
+     * @return the maximum delay in milliseconds
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Set the maximum delay between checks of a file which stays unchanged.
+     * After consecutive checks finding nothing new, the delay doubles up to
+     * this value, and it returns to {@link #getDelayMillis()} as soon as new
+     * content is found. 0 by default, which disables the backoff, as does any
+     * value not above the delay.
+     * 
+     * @param maxDelayMillis
+     *            the maximum delay in milliseconds
+     */
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("maxDelayMillis must not be negative: " + maxDelayMillis);
+        }
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Return the buffer size for reading.
+     * 
+     * @return the buffer size
+     */
+    public int getBufSize() {
+        return bufSize;
+    }
+
+    /**
+     * Set the buffer size for reading, 4096 by default.
+     * 
+     * @param bufSize
+     *            the buffer size
+     */
+    public void setBufSize(int bufSize) {
+        checkPositive(bufSize, "bufSize");
+        this.bufSize = bufSize;
+    }
+
+    /**
+     * Return the maximum number of lines passed to a
+     * {@link BatchTailerListener} at once.
+     * 
+     * @return the maximum number of lines
+     */
+    public int getMaxBatchLines() {
+        return maxBatchLines;
+    }
+
+    /**
+     * Set the maximum number of lines passed to a {@link BatchTailerListener}
+     * at once, 1024 by default.
+     * 
+     * @param maxBatchLines
+     *            the maximum number of lines
+     */
+    public void setMaxBatchLines(int maxBatchLines) {
+        checkPositive(maxBatchLines, "maxBatchLines");
+        this.maxBatchLines = maxBatchLines;
+    }
+
+    /**
+     * Return the maximum number of bytes passed to a
+     * {@link BatchTailerListener} at once.
+     * 
+     * @return the maximum number of bytes
+     */
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * Set the maximum number of bytes passed to a {@link BatchTailerListener}
+     * at once, 1MB by default. A line longer than this is passed in a batch of
+     * its own.
+     * 
+     * @param maxBatchBytes
+     *            the maximum number of bytes
+     */
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        checkPositive(maxBatchBytes, "maxBatchBytes");
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * Return how the tailer reads the file.
+     * 
+     * @return the read mode
+     */
+    public ReadMode getReadMode() {
+        return readMode;
+    }
+
+    /**
+     * Set how the tailer reads the file, {@link ReadMode#STREAM} by default.
+     * {@link ReadMode#MAPPED} helps when a large region has to be read, e.g.
+     * when the tailer starts far behind the end of the file.
+     * 
+     * @param readMode
+     *            the read mode
+     */
+    public void setReadMode(ReadMode readMode) {
+        if (readMode == null) {
+            throw new IllegalArgumentException("readMode must not be null");
+        }
+        this.readMode = readMode;
+    }
+
+    /**
+     * Return the size of a mapped window in {@link ReadMode#MAPPED} mode.
+     * 
+     * @return the window size
+     */
+    public int getMapWindowSize() {
+        return mapWindowSize;
+    }
+
+    /**
+     * Set the size of a mapped window in {@link ReadMode#MAPPED} mode, 64MB by
+     * default.
+     * 
+     * @param mapWindowSize
+     *            the window size
+     */
+    public void setMapWindowSize(int mapWindowSize) {
+        checkPositive(mapWindowSize, "mapWindowSize");
+        this.mapWindowSize = mapWindowSize;
+    }
+
+    /**
+     * Return how the tailer notices changes of the file.
+     * 
+     * @return the change detection
+     */
+    public ChangeDetection getChangeDetection() {
+        return changeDetection;
+    }
+
+    /**
+     * Set how the tailer notices changes of the file, {@link ChangeDetection#POLL}
+     * by default. It only applies to a tailer running on its own thread, a
+     * {@link TailerManager} always polls.
+     * 
+     * @param changeDetection
+     *            the change detection
+     */
+    public void setChangeDetection(ChangeDetection changeDetection) {
+        if (changeDetection == null) {
+            throw new IllegalArgumentException("changeDetection must not be null");
+        }
+        this.changeDetection = changeDetection;
+    }
+
+    /**
+     * Return the maximum time to wait for a change event before checking the
+     * file anyway.
+     * 
+     * @return the time in milliseconds
+     */
+    public long getSafetyPollMillis() {
+        return safetyPollMillis;
+    }
+
+    /**
+     * Set the maximum time to wait for a change event before checking the file
+     * anyway, 1000ms by default.
+     * 
+     * @param safetyPollMillis
+     *            the time in milliseconds
+     */
+    public void setSafetyPollMillis(long safetyPollMillis) {
+        checkPositive(safetyPollMillis, "safetyPollMillis");
+        this.safetyPollMillis = safetyPollMillis;
+    }
+
+    /**
+     * Return the store of the read position.
+     * 
+     * @return the checkpoint store, null if the position is not stored
+     */
+    public CheckpointStore getCheckpointStore() {
+        return checkpointStore;
+    }
+
+    /**
+     * Set the store of the read position, none by default. The tailer records
+     * the inode of the file and the position up to which the lines were
+     * delivered after every read. When it opens the file, it resumes from the
+     * stored position instead of the given one if the inode is still the
+     * same.
+     * 
+     * @param checkpointStore
+     *            the checkpoint store, null to not store the position
+     */
+    public void setCheckpointStore(CheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+    }
+
+    /**
+     * Return whether the file is probed by the native library.
+     * 
+     * @return true if the native probe is used
+     */
+    public boolean isNativeProbe() {
+        return nativeProbe;
+    }
+
+    /**
+     * Set whether the file is probed by the native library, false by default.
+     * The native probe gets the size and the last modified time of the open
+     * file and the inode of its path in one call, instead of separate calls
+     * through NIO. It falls back to NIO if the library can't be loaded.
+     * 
+     * @param nativeProbe
+     *            true to use the native probe
+     */
+    public void setNativeProbe(boolean nativeProbe) {
+        this.nativeProbe = nativeProbe;
+    }
+
+    /**
+     * Return the time without new content after which a rotated file is
+     * closed.
+     * 
+     * @return the time in milliseconds
+     */
+    public long getDrainQuietMillis() {
+        return drainQuietMillis;
+    }
+
+    /**
+     * Set the time without new content after which a rotated file is closed,
+     * 1000ms by default. Until then the tailer keeps reading the lines written
+     * late to the rotated file, while it follows the new file. 0 closes the
+     * rotated file as soon as the new one is opened.
+     * 
+     * @param drainQuietMillis
+     *            the time in milliseconds
+     * @see RotationListener
+     */
+    public void setDrainQuietMillis(long drainQuietMillis) {
+        if (drainQuietMillis < 0) {
+            throw new IllegalArgumentException("drainQuietMillis must not be negative: " + drainQuietMillis);
+        }
+        this.drainQuietMillis = drainQuietMillis;
+    }
+
+    /**
+     * Return whether the rotated files written after the checkpoint are read
+     * before the current file.
+     * 
+     * @return true if the rotated files are caught up with
+     */
+    public boolean isCatchUpRotated() {
+        return catchUpRotated;
+    }
+
+    /**
+     * Set whether the rotated files written after the checkpoint are read
+     * before the current file, false by default. It applies when the tailer
+     * starts with a checkpoint of another inode than the current file, i.e.
+     * the file was rotated while the tailer was behind or down. The rotated
+     * siblings, e.g. <code>app.log.1</code>, <code>app.log-20130101</code> or
+     * <code>app.log.1.gz</code>, are read in the order of their last modified
+     * time, the first one from the checkpoint position if it has the inode of
+     * the checkpoint, and compressed ones are inflated on the fly. The checkpoint
+     * stores the position in the uncompressed content meanwhile. Requires a
+     * checkpoint store.
+     * 
+     * @param catchUpRotated
+     *            true to catch up with the rotated files
+     */
+    public void setCatchUpRotated(boolean catchUpRotated) {
+        this.catchUpRotated = catchUpRotated;
+    }
+
+    /**
+     * Return whether the file is compressed as soon as it is rotated.
+     * 
+     * @return true if the file is compressed on rotation
+     */
+    public boolean isCompressOnRotate() {
+        return compressOnRotate;
+    }
+
+    /**
+     * Set whether the file is compressed as soon as it is rotated, e.g. by
+     * logrotate with <code>compress</code> and without
+     * <code>delaycompress</code>, false by default. When catching up with the
+     * rotated files, the first compressed sibling is then taken as the
+     * checkpointed file and read from the checkpoint position. Otherwise a
+     * compressed sibling, whose inode can't identify it, is read from its
+     * start, unless its own catch-up was interrupted.
+     * 
+     * @param compressOnRotate
+     *            true if the file is compressed on rotation
+     */
+    public void setCompressOnRotate(boolean compressOnRotate) {
+        this.compressOnRotate = compressOnRotate;
+    }
+
+    /**
+     * Return the number of threads scanning the existing content of the file.
+     * 
+     * @return number of threads, 0 if the content is read sequentially
+     */
+    public int getBackfillParallelism() {
+        return backfillParallelism;
+    }
+
+    /**
+     * Set the number of threads scanning the existing content of the file, 0
+     * by default to read it sequentially. When the tailer opens the file with
+     * at least two chunks to read, the content up to the current size is
+     * split into line aligned chunks which are read, split and decoded in
+     * parallel, then the tailer follows the file sequentially. The chunks of
+     * the tailers of a {@link TailerManager} are scanned by the pool of the
+     * manager, this number bounding the chunks in flight of each tailer.
+     * 
+     * @param backfillParallelism
+     *            number of threads
+     */
+    public void setBackfillParallelism(int backfillParallelism) {
+        if (backfillParallelism < 0) {
+            throw new IllegalArgumentException("backfillParallelism must not be negative: " + backfillParallelism);
+        }
+        this.backfillParallelism = backfillParallelism;
+    }
+
+    /**
+     * Return the approximate size of a backfilled chunk.
+     * 
+     * @return size in bytes
+     */
+    public int getBackfillChunkSize() {
+        return backfillChunkSize;
+    }
+
+    /**
+     * Set the approximate size of a backfilled chunk, 4MB by default. At most
+     * two chunks per thread are held in memory.
+     * 
+     * @param backfillChunkSize
+     *            size in bytes
+     */
+    public void setBackfillChunkSize(int backfillChunkSize) {
+        checkPositive(backfillChunkSize, "backfillChunkSize");
+        this.backfillChunkSize = backfillChunkSize;
+    }
+
+    /**
+     * Return whether the backfilled lines are delivered in file order.
+     * 
+     * @return true if the lines are delivered in order
+     */
+    public boolean isBackfillOrdered() {
+        return backfillOrdered;
+    }
+
+    /**
+     * Set whether the backfilled lines are delivered in file order, true by
+     * default. Otherwise the chunks are delivered as soon as they are scanned,
+     * the lines of a chunk stay in order and carry their own position.
+     * 
+     * @param backfillOrdered
+     *            true to deliver the lines in order
+     */
+    public void setBackfillOrdered(boolean backfillOrdered) {
+        this.backfillOrdered = backfillOrdered;
+    }
+
+    /**
+     * Return the charset of the tailed file.
+     * 
+     * @return the charset
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Set the charset of the tailed file, UTF-8 by default. Lines of ASCII
+     * characters are not decoded when the charset encodes ASCII as itself, as
+     * most multi-byte charsets but UTF-16 and UTF-32 do; the line splitting
+     * assumes such a charset anyway.
+     * 
+     * @param charset
+     *            the charset
+     */
+    public void setCharset(Charset charset) {
+        if (charset == null) {
+            throw new IllegalArgumentException("charset must not be null");
+        }
+        this.charset = charset;
+    }
+
+    /**
+     * Return what tells the lines which start a record.
+     * 
+     * @return the record start, null if lines are not grouped
+     */
+    public MultilineAggregator.RecordStart getRecordStart() {
+        return recordStart;
+    }
+
+    /**
+     * Set what tells the lines which start a record, null by default. When
+     * set, the other lines are appended to the record before them, and the
+     * listener gets whole records, their lines joined by <code>'\n'</code>,
+     * with the position right after the record. A record is passed on once
+     * the next one starts, or once it stays unchanged for
+     * {@link #getRecordFlushMillis()}. The lines of a rotated file and of the
+     * new one make separate records, as do the lines of chunks backfilled out
+     * of order.
+     * <p>
+     * The checkpoints and the position of a stopped tailer point at the start
+     * of the pending record, which is not passed on when the tailer stops.
+     * 
+     * @param recordStart
+     *            the record start, e.g.
+     *            {@link MultilineAggregator#notIndented()}
+     */
+    public void setRecordStart(MultilineAggregator.RecordStart recordStart) {
+        this.recordStart = recordStart;
+    }
+
+    /**
+     * Return the maximum number of lines of a record.
+     * 
+     * @return the maximum number of lines
+     */
+    public int getMaxRecordLines() {
+        return maxRecordLines;
+    }
+
+    /**
+     * Set the maximum number of lines of a record, 500 by default. The
+     * following lines start another record.
+     * 
+     * @param maxRecordLines
+     *            the maximum number of lines
+     */
+    public void setMaxRecordLines(int maxRecordLines) {
+        checkPositive(maxRecordLines, "maxRecordLines");
+        this.maxRecordLines = maxRecordLines;
+    }
+
+    /**
+     * Return the maximum size of a record.
+     * 
+     * @return the maximum size in bytes
+     */
+    public int getMaxRecordBytes() {
+        return maxRecordBytes;
+    }
+
+    /**
+     * Set the maximum size of a record, 1MB by default. A line which would
+     * make the record larger starts another record, a single line is never
+     * cut.
+     * 
+     * @param maxRecordBytes
+     *            the maximum size in bytes
+     */
+    public void setMaxRecordBytes(int maxRecordBytes) {
+        checkPositive(maxRecordBytes, "maxRecordBytes");
+        this.maxRecordBytes = maxRecordBytes;
+    }
+
+    /**
+     * Return the time without a new line after which a pending record is
+     * passed on.
+     * 
+     * @return the time in milliseconds
+     */
+    public long getRecordFlushMillis() {
+        return recordFlushMillis;
+    }
+
+    /**
+     * Set the time without a new line after which a pending record is passed
+     * on, 1000ms by default. It is checked when the file is polled, so the
+     * record may wait up to a poll delay longer.
+     * 
+     * @param recordFlushMillis
+     *            the time in milliseconds
+     */
+    public void setRecordFlushMillis(long recordFlushMillis) {
+        if (recordFlushMillis < 0) {
+            throw new IllegalArgumentException("recordFlushMillis must not be negative: " + recordFlushMillis);
+        }
+        this.recordFlushMillis = recordFlushMillis;
+    }
+
+    /**
+     * Return the filter of the lines passed to the listener.
+     * 
+     * @return the filter, null if every line is passed
+     */
+    public LineFilter getLineFilter() {
+        return lineFilter;
+    }
+
+    /**
+     * Set the filter of the lines passed to the listener, null by default.
+     * The lines are filtered on their bytes, before they are decoded, or the
+     * whole records when lines are grouped into records. The numbers of lines
+     * passed and dropped are counted by the tailer.
+     * 
+     * @param lineFilter
+     *            the filter
+     */
+    public void setLineFilter(LineFilter lineFilter) {
+        this.lineFilter = lineFilter;
+    }
+
+    /**
+     * Return the registry of the metrics of the tailer.
+     * 
+     * @return the registry, null if the metrics are not registered
+     */
+    public TailerMetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * Set the registry of the metrics of the tailer, null by default, e.g. a
+     * {@link JmxMetricsRegistry}. The metrics are registered when the tailer
+     * is created and unregistered when it stops; they are available from
+     * {@link Tailer#getMetrics()} anyway.
+     * 
+     * @param metricsRegistry
+     *            the registry
+     */
+    public void setMetricsRegistry(TailerMetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    static void checkPositive(long value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.netease.util.tailer;
 
 import java.io.File;
+import java.nio.charset.Charset;
 
 /**
  * Helper for create proper tailer.
@@ -9,16 +10,6 @@ import java.io.File;
  */
 public class TailerHelper {
 
-    /**
-     * Default check interval.
-     */
-    private static final int DEFAULT_DELAY_MILLIS = 100;
-
-    /**
-     * Default buffer size for reading.
-     */
-    private static final int DEFAULT_BUFSIZE = 4096;
-    
     private TailerHelper() {}
 
     /**
@@ -46,7 +37,26 @@ public class TailerHelper {
      *            position where tailer should start
      */
     public static Tailer createTailer(File file, TailerListener listener, long position) {
-        return createTailer(file, listener, position, DEFAULT_DELAY_MILLIS);
+        return createTailer(file, listener, position, TailerConfig.DEFAULT_DELAY_MILLIS);
+    }
+
+    /**
+     * Creates a Tailer for the given file in the given charset, starting from
+     * the target position, with the default delay of 100ms.
+     * 
+     * @param file
+     *            The file to follow
+     * @param listener
+     *            the TailerListener to use
+     * @param position
+     *            position where tailer should start
+     * @param charset
+     *            the charset of the file
+     */
+    public static Tailer createTailer(File file, TailerListener listener, long position, Charset charset) {
+        TailerConfig config = new TailerConfig();
+        config.setCharset(charset);
+        return createTailer(file, listener, position, config);
     }
 
     /**
@@ -63,7 +73,7 @@ public class TailerHelper {
      *            milliseconds
      */
     public static Tailer createTailer(File file, TailerListener listener, long position, long delayMillis) {
-        return createTailer(file, listener, position, delayMillis, DEFAULT_BUFSIZE);
+        return createTailer(file, listener, position, delayMillis, TailerConfig.DEFAULT_BUFSIZE);
     }
 
     /**
@@ -86,4 +96,20 @@ public class TailerHelper {
     public static Tailer createTailer(File file, TailerListener listener, long position, long delayMillis, int bufSize) {
         return new Tailer(file, listener, position, delayMillis, bufSize);
     }
+
+    /**
+     * Creates a Tailer for the given file, with the specified options.
+     * 
+     * @param file
+     *            the file to follow
+     * @param listener
+     *            the TailerListener to use
+     * @param position
+     *            position where tailer should start
+     * @param config
+     *            options of the tailer
+     */
+    public static Tailer createTailer(File file, TailerListener listener, long position, TailerConfig config) {
+        return new Tailer(file, listener, position, config);
+    }
 }
@@ -0,0 +1,17 @@
+package com.netease.util.tailer;
+
+import java.io.File;
+
+/**
+ * Creates the listeners of the files discovered by a {@link DirectoryTailer}.
+ */
+public interface TailerListenerFactory {
+    /**
+     * Create the listener of a file.
+     * 
+     * @param file
+     *            the discovered file
+     * @return the listener of the file
+     */
+    TailerListener create(File file);
+}
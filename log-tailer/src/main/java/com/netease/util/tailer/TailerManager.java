@@ -0,0 +1,417 @@
+package com.netease.util.tailer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives many tailers from a small fixed pool of threads.
+ * <p>
+ * Every tailer is polled by a task of one shared scheduler. A task reads at
+ * most a quantum of bytes before it is queued again behind the other ready
+ * tasks, so a busy file can't starve the others; a task which found nothing
+ * to read is scheduled again after the delay of its tailer. The read buffers
+ * belong to the worker threads and are shared by all the tailers, as is the
+ * pool scanning the backfilled chunks, whose turns only deliver the chunks
+ * already scanned.
+ * <p>
+ * A tailer whose lag, the bytes between its read position and the end of its
+ * file, fits in a quantum is live, and is read as soon as it is due. A tailer
+ * further behind is catching up: its turns are sized by its priority and by
+ * its lag relative to the average lag of the tailers catching up, from one to
+ * {@value #MAX_QUANTA} quanta, so the most-behind files drain first. With a
+ * bandwidth limit, the tailers catching up also wait for the read bandwidth
+ * left by the live ones, which never wait, so their latency stays low while
+ * the backlogs drain.
+ * <p>
+ * A tailer added to the manager must not be run on a thread of its own. It is
+ * removed from the manager once it is stopped, or failed with an exception.
+ */
+public class TailerManager {
+    /**
+     * Default maximum number of bytes read from a file in one turn.
+     */
+    private static final int DEFAULT_READ_QUANTUM = 256 * 1024;
+
+    /**
+     * Default priority of a tailer.
+     */
+    private static final int DEFAULT_PRIORITY = 1;
+
+    /**
+     * Maximum number of quanta of a turn, by the lag of the tailer.
+     */
+    static final int MAX_QUANTA = 4;
+
+    /**
+     * The scheduler running the tasks.
+     */
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Pool scanning the backfilled chunks of all the tailers.
+     */
+    private final ForkJoinPool backfillPool = new ForkJoinPool();
+
+    /**
+     * Buffer for reading of each worker thread.
+     */
+    private final ThreadLocal<ByteBuffer> buffers;
+
+    /**
+     * Maximum number of bytes read from a file in one turn.
+     */
+    private final long readQuantum;
+
+    /**
+     * Caps the bandwidth of the tailers catching up, null if it is unlimited.
+     */
+    private final ReadThrottle throttle;
+
+    /**
+     * Number of the tailers catching up.
+     */
+    private final AtomicInteger laggingCount = new AtomicInteger();
+
+    /**
+     * Sum of the lags of the tailers catching up.
+     */
+    private final AtomicLong laggingBytes = new AtomicLong();
+
+    /**
+     * The tasks of the tailers which are not finished.
+     */
+    private final ConcurrentMap<Tailer, PollTask> tasks = new ConcurrentHashMap<Tailer, PollTask>();
+
+    /**
+     * Creates a manager with the given number of threads, with the default
+     * buffer size and read quantum.
+     *
+     * @param threads
+     *            number of worker threads
+     */
+    public TailerManager(int threads) {
+        this(threads, TailerConfig.DEFAULT_BUFSIZE, DEFAULT_READ_QUANTUM);
+    }
+
+    /**
+     * Creates a manager.
+     *
+     * @param threads
+     *            number of worker threads
+     * @param bufSize
+     *            buffer size of each worker thread
+     * @param readQuantum
+     *            maximum number of bytes read from a file in one turn
+     */
+    public TailerManager(int threads, int bufSize, long readQuantum) {
+        this(threads, bufSize, readQuantum, 0);
+    }
+
+    /**
+     * Creates a manager with a limit of the read bandwidth.
+     *
+     * @param threads
+     *            number of worker threads
+     * @param bufSize
+     *            buffer size of each worker thread
+     * @param readQuantum
+     *            number of bytes read from a file in one turn, and lag up to
+     *            which a file is live
+     * @param maxBytesPerSecond
+     *            maximum read bandwidth of all the tailers, 0 for no limit
+     */
+    public TailerManager(int threads, final int bufSize, long readQuantum, long maxBytesPerSecond) {
+        TailerConfig.checkPositive(threads, "threads");
+        TailerConfig.checkPositive(bufSize, "bufSize");
+        TailerConfig.checkPositive(readQuantum, "readQuantum");
+        if (maxBytesPerSecond < 0) {
+            throw new IllegalArgumentException("maxBytesPerSecond must not be negative: " + maxBytesPerSecond);
+        }
+
+        this.readQuantum = readQuantum;
+        this.throttle = maxBytesPerSecond > 0 ? new ReadThrottle(maxBytesPerSecond) : null;
+        this.buffers = new ThreadLocal<ByteBuffer>() {
+            @Override
+            protected ByteBuffer initialValue() {
+                return ByteBuffer.allocate(bufSize);
+            }
+        };
+        this.scheduler = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "tailer-manager-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) {
+            @Override
+            protected void terminated() {
+                // no tailer is polled anymore
+                backfillPool.shutdownNow();
+            }
+        };
+        // the turns woken early don't wait in the queue until their delay
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts following the file of the tailer.
+     *
+     * @param tailer
+     *            the tailer
+     */
+    public void add(Tailer tailer) {
+        add(tailer, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Starts following the file of the tailer, with a priority which
+     * multiplies its turns while it catches up.
+     *
+     * @param tailer
+     *            the tailer
+     * @param priority
+     *            the priority, 1 by default
+     */
+    public void add(Tailer tailer, int priority) {
+        TailerConfig.checkPositive(priority, "priority");
+        PollTask task = new PollTask(tailer, priority);
+        if (tasks.putIfAbsent(tailer, task) != null) {
+            throw new IllegalArgumentException("tailer already added: " + tailer.getFile());
+        }
+        tailer.manage(backfillPool);
+        scheduler.execute(task);
+    }
+
+    /**
+     * Return the number of the tailers which are not finished.
+     *
+     * @return number of tailers
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * Return whether the tailer is added and not finished.
+     * 
+     * @param tailer
+     *            the tailer
+     * @return true if the tailer is followed by the manager
+     */
+    public boolean contains(Tailer tailer) {
+        return tasks.containsKey(tailer);
+    }
+
+    /**
+     * Stops the tailer, which is finished by its next turn, run right away
+     * instead of after the delay of the tailer.
+     *
+     * @param tailer
+     *            the tailer
+     */
+    void stop(Tailer tailer) {
+        tailer.stop();
+        PollTask task = tasks.get(tailer);
+        if (task != null) {
+            task.wakeup();
+        }
+    }
+
+    /**
+     * Return the sum of the lags of the tailers catching up.
+     *
+     * @return number of bytes
+     */
+    public long getLaggingBytes() {
+        return laggingBytes.get();
+    }
+
+    /**
+     * Return the number of bytes to read in a turn of a tailer catching up.
+     *
+     * @param lag
+     *            the lag of the tailer
+     * @param priority
+     *            the priority of the tailer
+     * @return number of bytes
+     */
+    long quantumOf(long lag, int priority) {
+        int count = laggingCount.get();
+        long total = laggingBytes.get();
+        // the lag in units of the average lag, rounded up
+        long quanta = count > 0 && total > 0 ? (lag * count + total - 1) / total : 1;
+        quanta = Math.max(1, Math.min(MAX_QUANTA, quanta));
+        return readQuantum * quanta * priority;
+    }
+
+    /**
+     * Stops all the tailers, and the worker threads once the tailers are
+     * finished.
+     */
+    public void shutdown() {
+        for (PollTask task : tasks.values()) {
+            task.tailer.stop();
+            // finish right away instead of after the delay of the tailer
+            task.wakeup();
+        }
+        scheduler.shutdown();
+    }
+
+    /**
+     * Waits for the worker threads to terminate after {@link #shutdown()}.
+     *
+     * @param timeout
+     *            the maximum time to wait
+     * @param unit
+     *            the time unit of the timeout
+     * @return true if the threads terminated, false if the timeout elapsed
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return scheduler.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Return the scheduler of the worker threads, to run the housekeeping
+     * tasks of the tailers.
+     * 
+     * @return the scheduler
+     */
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Polls a tailer and schedules the next turn.
+     */
+    private final class PollTask implements Runnable {
+        private final Tailer tailer;
+
+        private final int priority;
+
+        /**
+         * Lag of the tailer counted in the lag of the manager, 0 while it is
+         * live.
+         */
+        private long countedLag = 0;
+
+        /**
+         * The next turn while it waits for its delay.
+         */
+        private volatile ScheduledFuture<?> delayed;
+
+        PollTask(Tailer tailer, int priority) {
+            this.tailer = tailer;
+            this.priority = priority;
+        }
+
+        public void run() {
+            if (tailer.isStopped()) {
+                finish(null);
+                return;
+            }
+
+            long maxBytes = readQuantum;
+            if (countedLag > 0) {
+                long delay = throttle != null ? throttle.delay() : 0;
+                if (delay > 0) {
+                    scheduleAfter(delay);
+                    return;
+                }
+                maxBytes = quantumOf(countedLag, priority);
+            }
+
+            boolean more;
+            try {
+                more = tailer.poll(buffers.get(), maxBytes);
+            } catch (Exception e) {
+                finish(e);
+                return;
+            }
+            if (throttle != null) {
+                throttle.take(tailer.getReadBytes());
+            }
+            count(tailer.getMetrics().getLagBytes());
+
+            if (more) {
+                try {
+                    // queue behind the other ready tailers
+                    scheduler.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // the manager is shut down
+                    finish(null);
+                }
+            } else {
+                scheduleAfter(tailer.getCurrentDelay());
+            }
+        }
+
+        /**
+         * Schedule the next turn after the delay, or right away if the tailer
+         * is stopped meanwhile.
+         */
+        private void scheduleAfter(long delayMillis) {
+            try {
+                delayed = scheduler.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // the manager is shut down
+                finish(null);
+                return;
+            }
+            if (tailer.isStopped()) {
+                wakeup();
+            }
+        }
+
+        /**
+         * Run the next turn right away if it waits for its delay.
+         */
+        void wakeup() {
+            ScheduledFuture<?> future = delayed;
+            if (future != null && future.cancel(false)) {
+                try {
+                    scheduler.execute(this);
+                } catch (RejectedExecutionException e) {
+                    finish(null);
+                }
+            }
+        }
+
+        /**
+         * Count the lag of the tailer in the lag of the manager, if it is
+         * catching up.
+         */
+        private void count(long lag) {
+            long lagging = lag > readQuantum ? lag : 0;
+            if (lagging == countedLag) {
+                return;
+            }
+            if (countedLag == 0) {
+                laggingCount.incrementAndGet();
+            } else if (lagging == 0) {
+                laggingCount.decrementAndGet();
+            }
+            laggingBytes.addAndGet(lagging - countedLag);
+            countedLag = lagging;
+        }
+
+        private void finish(Exception failure) {
+            count(0);
+            tasks.remove(tailer);
+            tailer.finish(failure);
+        }
+    }
+}
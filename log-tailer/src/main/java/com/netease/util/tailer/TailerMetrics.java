@@ -0,0 +1,123 @@
+package com.netease.util.tailer;
+
+import java.io.File;
+
+/**
+ * Counters and gauges of a tailer.
+ * <p>
+ * The values are accumulated by the tailer in plain fields while it reads,
+ * and published here once per poll by the thread running it, which is the
+ * only writer. Reading them from other threads costs the tailer nothing.
+ */
+public final class TailerMetrics implements TailerMetricsMBean {
+    private final File file;
+
+    private volatile long bytesRead;
+
+    private volatile long linesDelivered;
+
+    private volatile long linesFiltered;
+
+    private volatile long pollCount;
+
+    private volatile long emptyPollCount;
+
+    private volatile long rotationCount;
+
+    private volatile long fileNotFoundCount;
+
+    private volatile long lagBytes;
+
+    private volatile long readNanos;
+
+    private volatile long callbackNanos;
+
+    TailerMetrics(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Add the counts of a poll.
+     */
+    void addPoll(long bytes, long delivered, long filtered, long readTime, long callbackTime) {
+        // single writer, plain increments are safe
+        pollCount++;
+        if (bytes == 0) {
+            emptyPollCount++;
+        }
+        bytesRead += bytes;
+        if (delivered > 0) {
+            linesDelivered += delivered;
+        }
+        if (filtered > 0) {
+            linesFiltered += filtered;
+        }
+        readNanos += readTime;
+        callbackNanos += callbackTime;
+    }
+
+    void addRotation() {
+        rotationCount++;
+    }
+
+    void addFileNotFound() {
+        fileNotFoundCount++;
+    }
+
+    void setLagBytes(long lagBytes) {
+        this.lagBytes = lagBytes;
+    }
+
+    /**
+     * Return the tailed file.
+     * 
+     * @return the file
+     */
+    public File getTailedFile() {
+        return file;
+    }
+
+    public String getFile() {
+        return file.getAbsolutePath();
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getLinesDelivered() {
+        return linesDelivered;
+    }
+
+    public long getLinesFiltered() {
+        return linesFiltered;
+    }
+
+    public long getPollCount() {
+        return pollCount;
+    }
+
+    public long getEmptyPollCount() {
+        return emptyPollCount;
+    }
+
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    public long getFileNotFoundCount() {
+        return fileNotFoundCount;
+    }
+
+    public long getLagBytes() {
+        return lagBytes;
+    }
+
+    public long getReadMillis() {
+        return readNanos / 1000000;
+    }
+
+    public long getCallbackMillis() {
+        return callbackNanos / 1000000;
+    }
+}
@@ -0,0 +1,85 @@
+package com.netease.util.tailer;
+
+/**
+ * Management interface of the metrics of a tailer.
+ */
+public interface TailerMetricsMBean {
+    /**
+     * Return the path of the tailed file.
+     * 
+     * @return the path
+     */
+    String getFile();
+
+    /**
+     * Return the number of bytes read.
+     * 
+     * @return the number of bytes
+     */
+    long getBytesRead();
+
+    /**
+     * Return the number of lines, or records, passed to the listener.
+     * 
+     * @return the number of lines
+     */
+    long getLinesDelivered();
+
+    /**
+     * Return the number of lines, or records, dropped by the line filter.
+     * 
+     * @return the number of lines
+     */
+    long getLinesFiltered();
+
+    /**
+     * Return the number of polls, i.e. checks of the file.
+     * 
+     * @return the number of polls
+     */
+    long getPollCount();
+
+    /**
+     * Return the number of polls which found no new content.
+     * 
+     * @return the number of polls
+     */
+    long getEmptyPollCount();
+
+    /**
+     * Return the number of rotations of the file.
+     * 
+     * @return the number of rotations
+     */
+    long getRotationCount();
+
+    /**
+     * Return the number of times the file was not found.
+     * 
+     * @return the number of times
+     */
+    long getFileNotFoundCount();
+
+    /**
+     * Return the number of bytes of the file not read yet, as of the last
+     * poll.
+     * 
+     * @return the number of bytes
+     */
+    long getLagBytes();
+
+    /**
+     * Return the time spent reading the file.
+     * 
+     * @return the time in milliseconds
+     */
+    long getReadMillis();
+
+    /**
+     * Return the time spent passing the read bytes to the listener, including
+     * splitting them into lines.
+     * 
+     * @return the time in milliseconds
+     */
+    long getCallbackMillis();
+}
@@ -0,0 +1,23 @@
+package com.netease.util.tailer;
+
+/**
+ * Receives the metrics of the tailers, e.g. to publish them to a monitoring
+ * system.
+ */
+public interface TailerMetricsRegistry {
+    /**
+     * Called when a tailer is created.
+     * 
+     * @param metrics
+     *            the metrics of the tailer
+     */
+    void register(TailerMetrics metrics);
+
+    /**
+     * Called when a tailer is stopped or failed.
+     * 
+     * @param metrics
+     *            the metrics of the tailer
+     */
+    void unregister(TailerMetrics metrics);
+}
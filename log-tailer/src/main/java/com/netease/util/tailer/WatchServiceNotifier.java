@@ -0,0 +1,88 @@
+package com.netease.util.tailer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Waits for the {@link DirectoryWatcher} to report a change of the tailed
+ * file, or for the safety poll interval, whichever comes first.
+ */
+final class WatchServiceNotifier extends ChangeNotifier {
+    private final Path directory;
+
+    private final String name;
+
+    private final long safetyPollMillis;
+
+    /**
+     * Whether a change was reported since the last wait, guarded by this.
+     */
+    private boolean signaled = false;
+
+    private WatchServiceNotifier(Path directory, String name, long safetyPollMillis) {
+        this.directory = directory;
+        this.name = name;
+        this.safetyPollMillis = safetyPollMillis;
+    }
+
+    /**
+     * Creates the notifier.
+     * 
+     * @param file
+     *            the tailed file
+     * @param safetyPollMillis
+     *            the maximum time to wait for an event
+     * @return the notifier, null if the directory can't be watched
+     */
+    static WatchServiceNotifier create(File file, long safetyPollMillis) {
+        Path path = file.getAbsoluteFile().toPath();
+        Path directory = path.getParent();
+        if (directory == null) {
+            return null;
+        }
+
+        WatchServiceNotifier notifier = new WatchServiceNotifier(directory, path.getFileName().toString(),
+                safetyPollMillis);
+        try {
+            DirectoryWatcher.getInstance().register(directory, notifier.name, notifier);
+        } catch (IOException e) {
+            return null;
+        }
+        return notifier;
+    }
+
+    @Override
+    synchronized void await(long delayMillis) {
+        long deadline = System.currentTimeMillis() + safetyPollMillis;
+        long remaining = safetyPollMillis;
+        while (!signaled && remaining > 0) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        signaled = false;
+    }
+
+    @Override
+    synchronized void wakeup() {
+        signal();
+    }
+
+    synchronized void signal() {
+        signaled = true;
+        notifyAll();
+    }
+
+    @Override
+    void close() {
+        try {
+            DirectoryWatcher.getInstance().unregister(directory, name, this);
+        } catch (IOException e) {
+            // not registered
+        }
+    }
+}
@@ -0,0 +1,139 @@
+#include <jni.h>
+#include <limits.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <sys/stat.h>
+#include "com_netease_util_InodeUtil.h"
+
+#define STAT_FIELDS com_netease_util_InodeUtil_STAT_FIELDS
+
+/*
+ * Class:     com_netease_util_InodeUtil
+ * Method:    getInode
+ * Signature: (Ljava/lang/String;)J
+ */
+JNIEXPORT jlong JNICALL Java_com_netease_util_InodeUtil_getInode
+(JNIEnv *env, jclass cls, jstring path) {
+    jlong inode = -1;
+    const char *cpath = env->GetStringUTFChars(path, 0);
+    struct stat statbuf;
+    if (stat(cpath, &statbuf) != -1) {
+        inode = (jlong)statbuf.st_ino;
+    }
+    
+    env->ReleaseStringUTFChars(path, cpath);
+    
+    return inode;
+}
+
+static jlong modifiedMillis(const struct stat *statbuf) {
+#ifdef __linux__
+    return (jlong)statbuf->st_mtim.tv_sec * 1000 + statbuf->st_mtim.tv_nsec / 1000000;
+#else
+    return (jlong)statbuf->st_mtime * 1000;
+#endif
+}
+
+static void fillStat(const struct stat *statbuf, jlong *value) {
+    value[0] = (jlong)statbuf->st_ino;
+    value[1] = (jlong)statbuf->st_size;
+    value[2] = modifiedMillis(statbuf);
+}
+
+/*
+ * Class:     com_netease_util_InodeUtil
+ * Method:    statAll
+ * Signature: ([[B[J)I
+ */
+JNIEXPORT jint JNICALL Java_com_netease_util_InodeUtil_statAll
+(JNIEnv *env, jclass cls, jobjectArray paths, jlongArray stats) {
+    jsize count = env->GetArrayLength(paths);
+    if (env->GetArrayLength(stats) < (jlong)count * STAT_FIELDS) {
+        jclass iae = env->FindClass("java/lang/IllegalArgumentException");
+        env->ThrowNew(iae, "stats array too short");
+        return 0;
+    }
+
+    jlong *values = (jlong *)malloc(sizeof(jlong) * STAT_FIELDS * (count > 0 ? count : 1));
+    if (values == NULL) {
+        jclass oom = env->FindClass("java/lang/OutOfMemoryError");
+        env->ThrowNew(oom, "can't allocate stat values");
+        return 0;
+    }
+
+    char cpath[PATH_MAX];
+    struct stat statbuf;
+    jint found = 0;
+    for (jsize i = 0; i < count; i++) {
+        jlong *value = values + i * STAT_FIELDS;
+        value[0] = value[1] = value[2] = -1;
+
+        jbyteArray path = (jbyteArray)env->GetObjectArrayElement(paths, i);
+        if (path == NULL) {
+            continue;
+        }
+        jsize length = env->GetArrayLength(path);
+        if (length > 0 && length <= PATH_MAX) {
+            // the path is copied since stat may block, e.g. on NFS
+            env->GetByteArrayRegion(path, 0, length, (jbyte *)cpath);
+            cpath[length - 1] = '\0';
+            if (stat(cpath, &statbuf) != -1) {
+                fillStat(&statbuf, value);
+                found++;
+            }
+        }
+        env->DeleteLocalRef(path);
+    }
+
+    env->SetLongArrayRegion(stats, 0, count * STAT_FIELDS, values);
+    free(values);
+
+    return found;
+}
+
+
+static jfieldID fdField = NULL;
+
+/*
+ * Class:     com_netease_util_InodeUtil
+ * Method:    probe
+ * Signature: (Ljava/io/FileDescriptor;[B[J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_netease_util_InodeUtil_probe
+(JNIEnv *env, jclass cls, jobject fdObj, jbyteArray path, jlongArray stats) {
+    if (env->GetArrayLength(stats) < 2 * STAT_FIELDS) {
+        jclass iae = env->FindClass("java/lang/IllegalArgumentException");
+        env->ThrowNew(iae, "stats array too short");
+        return JNI_FALSE;
+    }
+
+    if (fdField == NULL) {
+        jclass fdClass = env->GetObjectClass(fdObj);
+        fdField = env->GetFieldID(fdClass, "fd", "I");
+        if (fdField == NULL) {
+            // NoSuchFieldError is pending
+            return JNI_FALSE;
+        }
+    }
+
+    jlong values[2 * STAT_FIELDS];
+    struct stat statbuf;
+    if (fstat(env->GetIntField(fdObj, fdField), &statbuf) == -1) {
+        return JNI_FALSE;
+    }
+    fillStat(&statbuf, values);
+
+    char cpath[PATH_MAX];
+    jsize length = env->GetArrayLength(path);
+    values[STAT_FIELDS] = values[STAT_FIELDS + 1] = values[STAT_FIELDS + 2] = -1;
+    if (length > 0 && length <= PATH_MAX) {
+        env->GetByteArrayRegion(path, 0, length, (jbyte *)cpath);
+        cpath[length - 1] = '\0';
+        if (stat(cpath, &statbuf) != -1) {
+            fillStat(&statbuf, values + STAT_FIELDS);
+        }
+    }
+
+    env->SetLongArrayRegion(stats, 0, 2 * STAT_FIELDS, values);
+    return JNI_TRUE;
+}
@@ -0,0 +1,39 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class com_netease_util_InodeUtil */
+
+#ifndef _Included_com_netease_util_InodeUtil
+#define _Included_com_netease_util_InodeUtil
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef com_netease_util_InodeUtil_STAT_FIELDS
+#define com_netease_util_InodeUtil_STAT_FIELDS 3L
+/*
+ * Class:     com_netease_util_InodeUtil
+ * Method:    getInode
+ * Signature: (Ljava/lang/String;)J
+ */
+JNIEXPORT jlong JNICALL Java_com_netease_util_InodeUtil_getInode
+  (JNIEnv *, jclass, jstring);
+
+/*
+ * Class:     com_netease_util_InodeUtil
+ * Method:    statAll
+ * Signature: ([[B[J)I
+ */
+JNIEXPORT jint JNICALL Java_com_netease_util_InodeUtil_statAll
+  (JNIEnv *, jclass, jobjectArray, jlongArray);
+
+/*
+ * Class:     com_netease_util_InodeUtil
+ * Method:    probe
+ * Signature: (Ljava/io/FileDescriptor;[B[J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_netease_util_InodeUtil_probe
+  (JNIEnv *, jclass, jobject, jbyteArray, jlongArray);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,144 @@
+#include <jni.h>
+#include "com_netease_util_InotifyUtil.h"
+
+#ifdef __linux__
+#include <errno.h>
+#include <poll.h>
+#include <string.h>
+#include <stdint.h>
+#include <unistd.h>
+#include <sys/eventfd.h>
+#include <sys/inotify.h>
+#endif
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    init
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_netease_util_InotifyUtil_init
+(JNIEnv *env, jclass cls) {
+#ifdef __linux__
+    return inotify_init1(IN_NONBLOCK | IN_CLOEXEC);
+#else
+    return -1;
+#endif
+}
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    initWakeup
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_netease_util_InotifyUtil_initWakeup
+(JNIEnv *env, jclass cls) {
+#ifdef __linux__
+    return eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+#else
+    return -1;
+#endif
+}
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    wakeup
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_com_netease_util_InotifyUtil_wakeup
+(JNIEnv *env, jclass cls, jint wakeupFd) {
+#ifdef __linux__
+    uint64_t one = 1;
+    ssize_t written = write(wakeupFd, &one, sizeof(one));
+    (void) written;
+#endif
+}
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    addWatch
+ * Signature: (ILjava/lang/String;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_netease_util_InotifyUtil_addWatch
+(JNIEnv *env, jclass cls, jint fd, jstring path, jint mask) {
+#ifdef __linux__
+    const char *cpath = env->GetStringUTFChars(path, 0);
+    jint wd = inotify_add_watch(fd, cpath, (uint32_t)mask);
+    env->ReleaseStringUTFChars(path, cpath);
+
+    return wd;
+#else
+    return -1;
+#endif
+}
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    await
+ * Signature: (IILjava/lang/String;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_netease_util_InotifyUtil_await
+(JNIEnv *env, jclass cls, jint fd, jint wakeupFd, jstring name, jint timeout) {
+#ifdef __linux__
+    struct pollfd pfds[2];
+    pfds[0].fd = fd;
+    pfds[0].events = POLLIN;
+    pfds[0].revents = 0;
+    pfds[1].fd = wakeupFd;
+    pfds[1].events = POLLIN;
+    pfds[1].revents = 0;
+
+    int ready = poll(pfds, wakeupFd >= 0 ? 2 : 1, timeout);
+    if (ready < 0) {
+        return errno == EINTR ? 0 : -1;
+    }
+    if (ready == 0) {
+        return 0;
+    }
+
+    if (pfds[1].revents & POLLIN) {
+        // consume the wakeup
+        uint64_t count;
+        ssize_t consumed = read(wakeupFd, &count, sizeof(count));
+        (void) consumed;
+    }
+    if (!(pfds[0].revents & POLLIN)) {
+        return 0;
+    }
+
+    const char *cname = name == NULL ? NULL : env->GetStringUTFChars(name, 0);
+    char buf[4096] __attribute__ ((aligned(__alignof__(struct inotify_event))));
+    jint mask = 0;
+    ssize_t len;
+
+    // drain the queue, the fd is non-blocking
+    while ((len = read(fd, buf, sizeof(buf))) > 0) {
+        for (char *ptr = buf; ptr < buf + len;) {
+            struct inotify_event *event = (struct inotify_event *) ptr;
+            if (event->len == 0 || cname == NULL || strcmp(event->name, cname) == 0) {
+                mask |= (jint)event->mask;
+            }
+            ptr += sizeof(struct inotify_event) + event->len;
+        }
+    }
+
+    if (cname != NULL) {
+        env->ReleaseStringUTFChars(name, cname);
+    }
+
+    return mask;
+#else
+    return -1;
+#endif
+}
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    close
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_com_netease_util_InotifyUtil_close
+(JNIEnv *env, jclass cls, jint fd) {
+#ifdef __linux__
+    close(fd);
+#endif
+}
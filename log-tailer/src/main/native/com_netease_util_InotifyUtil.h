@@ -0,0 +1,75 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class com_netease_util_InotifyUtil */
+
+#ifndef _Included_com_netease_util_InotifyUtil
+#define _Included_com_netease_util_InotifyUtil
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef com_netease_util_InotifyUtil_IN_MODIFY
+#define com_netease_util_InotifyUtil_IN_MODIFY 2L
+#undef com_netease_util_InotifyUtil_IN_MOVED_FROM
+#define com_netease_util_InotifyUtil_IN_MOVED_FROM 64L
+#undef com_netease_util_InotifyUtil_IN_MOVED_TO
+#define com_netease_util_InotifyUtil_IN_MOVED_TO 128L
+#undef com_netease_util_InotifyUtil_IN_CREATE
+#define com_netease_util_InotifyUtil_IN_CREATE 256L
+#undef com_netease_util_InotifyUtil_IN_DELETE
+#define com_netease_util_InotifyUtil_IN_DELETE 512L
+#undef com_netease_util_InotifyUtil_IN_DELETE_SELF
+#define com_netease_util_InotifyUtil_IN_DELETE_SELF 1024L
+#undef com_netease_util_InotifyUtil_IN_MOVE_SELF
+#define com_netease_util_InotifyUtil_IN_MOVE_SELF 2048L
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    init
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_netease_util_InotifyUtil_init
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    initWakeup
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_netease_util_InotifyUtil_initWakeup
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    wakeup
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_com_netease_util_InotifyUtil_wakeup
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    addWatch
+ * Signature: (ILjava/lang/String;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_netease_util_InotifyUtil_addWatch
+  (JNIEnv *, jclass, jint, jstring, jint);
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    await
+ * Signature: (IILjava/lang/String;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_netease_util_InotifyUtil_await
+  (JNIEnv *, jclass, jint, jint, jstring, jint);
+
+/*
+ * Class:     com_netease_util_InotifyUtil
+ * Method:    close
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_com_netease_util_InotifyUtil_close
+  (JNIEnv *, jclass, jint);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,165 @@
+package com.netease.util.tailer.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netease.util.tailer.AsyncTailerListener;
+import com.netease.util.tailer.Tailer;
+import com.netease.util.tailer.TailerHelper;
+import com.netease.util.tailer.TailerListener;
+
+/**
+ * Test case for asynchronous listener.
+ */
+public class AsyncTailerListenerTest {
+    private static final String LINE = "line";
+
+    /**
+     * Listener which waits for a latch before the first line.
+     */
+    class SlowListener implements TailerListener {
+        private final CountDownLatch latch;
+        private List<String> resultList = new ArrayList<String>();
+        private List<Long> positionList = new ArrayList<Long>();
+        private volatile boolean stopped = false;
+        private int rotated = 0;
+
+        SlowListener(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void init(Tailer tailer) {
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public void fileNotFound() {
+        }
+
+        @Override
+        public void fileRotated() {
+            rotated++;
+        }
+
+        @Override
+        public void handle(String line, long position, long lastModified) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            resultList.add(line);
+            positionList.add(position);
+        }
+
+        @Override
+        public void handle(Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private AsyncTailerListener start(SlowListener slow, AsyncTailerListener.Backpressure backpressure) {
+        AsyncTailerListener async = new AsyncTailerListener(slow, 16, backpressure, new File("test_data"));
+        // the tailer is not run, this thread produces the events
+        TailerHelper.createTailer(new File("test_data/async_target"), async);
+        return async;
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        SlowListener slow = new SlowListener(latch);
+        AsyncTailerListener async = start(slow, AsyncTailerListener.Backpressure.BLOCK);
+
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                latch.countDown();
+            }
+        }.start();
+
+        int lines = 10000;
+        for (int i = 0; i < lines; i++) {
+            async.handle(LINE + i, i, 0);
+        }
+        async.stop();
+        Assert.assertTrue(async.awaitStop(5000));
+
+        Assert.assertTrue(slow.stopped);
+        Assert.assertEquals(lines, slow.resultList.size());
+        for (int i = 0; i < lines; i++) {
+            Assert.assertEquals(LINE + i, slow.resultList.get(i));
+        }
+        Assert.assertTrue(async.getBlockedCount() > 0);
+        Assert.assertEquals(16, async.getMaxQueueDepth());
+        Assert.assertEquals(0, async.getQueueDepth());
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        SlowListener slow = new SlowListener(latch);
+        AsyncTailerListener async = start(slow, AsyncTailerListener.Backpressure.DROP_OLDEST);
+
+        int lines = 1000;
+        for (int i = 0; i < lines; i++) {
+            async.handle(LINE + i, i, 0);
+        }
+        latch.countDown();
+        async.stop();
+        Assert.assertTrue(async.awaitStop(5000));
+
+        Assert.assertTrue(slow.stopped);
+        Assert.assertTrue(async.getDroppedCount() > 0);
+        Assert.assertEquals(lines, slow.resultList.size() + async.getDroppedCount());
+        // the newest lines are kept, in order
+        for (int i = 1; i < slow.positionList.size(); i++) {
+            Assert.assertTrue(slow.positionList.get(i) > slow.positionList.get(i - 1));
+        }
+        Assert.assertEquals(LINE + (lines - 1), slow.resultList.get(slow.resultList.size() - 1));
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        SlowListener slow = new SlowListener(latch);
+        AsyncTailerListener async = start(slow, AsyncTailerListener.Backpressure.SPILL);
+
+        int lines = 10000;
+        for (int i = 0; i < lines; i++) {
+            async.handle(LINE + i, i, 0);
+            if (i == lines / 2) {
+                async.fileRotated();
+            }
+        }
+        Assert.assertTrue(async.getSpillDepth() > 0);
+        latch.countDown();
+        async.stop();
+        Assert.assertTrue(async.awaitStop(5000));
+
+        Assert.assertTrue(slow.stopped);
+        Assert.assertEquals(1, slow.rotated);
+        Assert.assertEquals(lines, slow.resultList.size());
+        for (int i = 0; i < lines; i++) {
+            Assert.assertEquals(LINE + i, slow.resultList.get(i));
+            Assert.assertEquals(i, slow.positionList.get(i).longValue());
+        }
+        Assert.assertTrue(async.getSpilledCount() > 0);
+        Assert.assertEquals(0, async.getSpillDepth());
+        Assert.assertEquals(lines + 2, async.getDeliveredCount());
+    }
+}
@@ -0,0 +1,335 @@
+package com.netease.util.tailer.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netease.util.tailer.CheckpointStore;
+import com.netease.util.tailer.Tailer;
+import com.netease.util.tailer.TailerConfig;
+import com.netease.util.tailer.TailerHelper;
+
+/**
+ * Test case for checkpoint store.
+ */
+public class CheckpointStoreTest {
+    @Test
+    public void testReopen() throws Exception {
+        File storeFile = TestFiles.newFile("checkpoints");
+
+        CheckpointStore store = new CheckpointStore(storeFile);
+        store.update("a", 1, 100, 1000);
+        store.update("b", 2, 200, 2000);
+        store.update("a", 1, 150, 1500);
+        store.close();
+
+        store = new CheckpointStore(storeFile);
+        Assert.assertEquals(150, store.get("a").getPosition());
+        Assert.assertEquals(1500, store.get("a").getLastModified());
+        Assert.assertEquals(2, store.get("b").getInode());
+        Assert.assertNull(store.get("c"));
+        store.close();
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        File storeFile = TestFiles.newFile("checkpoints");
+
+        CheckpointStore store = new CheckpointStore(storeFile);
+        store.update("a", 1, 100, 1000);
+        store.update("b", 2, 200, 2000);
+        store.commit();
+        store.remove("a");
+        Assert.assertNull(store.get("a"));
+        store.close();
+
+        store = new CheckpointStore(storeFile);
+        Assert.assertNull(store.get("a"));
+        Assert.assertEquals(200, store.get("b").getPosition());
+        store.update("a", 3, 300, 3000);
+        store.close();
+
+        store = new CheckpointStore(storeFile);
+        Assert.assertEquals(300, store.get("a").getPosition());
+        store.close();
+    }
+
+    @Test
+    public void testTornRecord() throws Exception {
+        File storeFile = TestFiles.newFile("checkpoints");
+
+        CheckpointStore store = new CheckpointStore(storeFile);
+        store.update("a", 1, 100, 1000);
+        store.commit();
+        store.update("a", 1, 200, 2000);
+        store.close();
+
+        // cut the last record in the middle
+        RandomAccessFile raf = new RandomAccessFile(storeFile, "rw");
+        raf.setLength(raf.length() - 5);
+        raf.close();
+
+        store = new CheckpointStore(storeFile);
+        Assert.assertEquals(100, store.get("a").getPosition());
+        store.update("a", 1, 300, 3000);
+        store.close();
+
+        store = new CheckpointStore(storeFile);
+        Assert.assertEquals(300, store.get("a").getPosition());
+        store.close();
+    }
+
+    @Test
+    public void testTailerResume() throws Exception {
+        File storeFile = TestFiles.newFile("checkpoints");
+        File targetFile = TestFiles.newFile("checkpoint_target");
+        TestFiles.writeFile(targetFile, 0, 100);
+
+        CheckpointStore store = new CheckpointStore(storeFile);
+        TailerConfig config = new TailerConfig();
+        config.setCheckpointStore(store);
+
+        CollectingListener listener = new CollectingListener();
+        Tailer tailer = TailerHelper.createTailer(targetFile, listener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+        Thread.sleep(500);
+        tailer.stop();
+        thread.join();
+        store.close();
+        Assert.assertEquals(100, listener.size());
+
+        TestFiles.writeFile(targetFile, 100, 100);
+
+        // resume from the checkpoint, not from the given position
+        store = new CheckpointStore(storeFile);
+        config.setCheckpointStore(store);
+        listener = new CollectingListener();
+        tailer = TailerHelper.createTailer(targetFile, listener, 0, config);
+        thread = new Thread(tailer);
+        thread.start();
+        Thread.sleep(500);
+        tailer.stop();
+        thread.join();
+
+        Assert.assertEquals(100, listener.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(TestFiles.LINE + (100 + i), listener.get(i));
+        }
+
+        // the file is replaced, the checkpoint doesn't apply
+        targetFile.delete();
+        TestFiles.writeFile(targetFile, 0, 50);
+
+        listener = new CollectingListener();
+        tailer = TailerHelper.createTailer(targetFile, listener, 0, config);
+        thread = new Thread(tailer);
+        thread.start();
+        Thread.sleep(500);
+        tailer.stop();
+        thread.join();
+        store.close();
+
+        Assert.assertEquals(50, listener.size());
+        Assert.assertEquals(TestFiles.LINE + 0, listener.get(0));
+    }
+
+    private void runTailer(File file, CollectingListener listener, TailerConfig config) throws Exception {
+        Tailer tailer = TailerHelper.createTailer(file, listener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+        Thread.sleep(500);
+        tailer.stop();
+        thread.join();
+    }
+
+    private void gzip(File file, File gzFile) throws Exception {
+        InputStream in = new FileInputStream(file);
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(gzFile));
+        byte[] buf = new byte[4096];
+        int num;
+        while ((num = in.read(buf)) != -1) {
+            out.write(buf, 0, num);
+        }
+        in.close();
+        out.close();
+    }
+
+    @Test
+    public void testCatchUpRotated() throws Exception {
+        File storeFile = TestFiles.newFile("checkpoints");
+        File targetFile = TestFiles.newFile("catchup_target");
+        File plainFile = TestFiles.newFile("catchup_target-2");
+        File gzFile = TestFiles.newFile("catchup_target.1.gz");
+        File rotatedFile = TestFiles.newFile("catchup_target.1");
+        File tempFile = TestFiles.newFile("catchup_target.tmp");
+        TestFiles.writeFile(targetFile, 0, 100);
+
+        CheckpointStore store = new CheckpointStore(storeFile);
+        TailerConfig config = new TailerConfig();
+        config.setCheckpointStore(store);
+        config.setCatchUpRotated(true);
+        config.setCompressOnRotate(true);
+        CollectingListener listener = new CollectingListener();
+        runTailer(targetFile, listener, config);
+        store.close();
+        Assert.assertEquals(100, listener.size());
+
+        // while the tailer is down, the file is rotated and compressed
+        long now = System.currentTimeMillis();
+        TestFiles.writeFile(targetFile, 100, 100);
+        targetFile.renameTo(rotatedFile);
+        gzip(rotatedFile, gzFile);
+        rotatedFile.delete();
+        gzFile.setLastModified(now + 1000);
+
+        // and rotated again without compression
+        TestFiles.writeFile(targetFile, 200, 100);
+        targetFile.renameTo(plainFile);
+        plainFile.setLastModified(now + 2000);
+
+        TestFiles.writeFile(targetFile, 300, 50);
+
+        // not a rotated file
+        TestFiles.writeFile(tempFile, 0, 10);
+        tempFile.setLastModified(now + 3000);
+
+        store = new CheckpointStore(storeFile);
+        config.setCheckpointStore(store);
+        listener = new CollectingListener();
+        runTailer(targetFile, listener, config);
+        store.close();
+
+        Assert.assertEquals(250, listener.size());
+        for (int i = 0; i < 250; i++) {
+            Assert.assertEquals(TestFiles.LINE + (100 + i), listener.get(i));
+        }
+
+        plainFile.delete();
+        gzFile.delete();
+        tempFile.delete();
+    }
+
+    /**
+     * A compressed sibling is read from its start unless the file is known to
+     * be compressed on rotation.
+     */
+    @Test
+    public void testCatchUpCompressed() throws Exception {
+        File storeFile = TestFiles.newFile("checkpoints");
+        File targetFile = TestFiles.newFile("catchup_target");
+        File gzFile = TestFiles.newFile("catchup_target-20130101.gz");
+        File rotatedFile = TestFiles.newFile("catchup_target-20130101");
+        TestFiles.writeFile(targetFile, 0, 100);
+
+        CheckpointStore store = new CheckpointStore(storeFile);
+        TailerConfig config = new TailerConfig();
+        config.setCheckpointStore(store);
+        config.setCatchUpRotated(true);
+        CollectingListener listener = new CollectingListener();
+        runTailer(targetFile, listener, config);
+        store.close();
+        Assert.assertEquals(100, listener.size());
+
+        // while the tailer is down, a file which may not be the checkpointed
+        // one is compressed
+        TestFiles.writeFile(targetFile, 100, 100);
+        targetFile.renameTo(rotatedFile);
+        TestFiles.writeFile(targetFile, 200, 50);
+        gzip(rotatedFile, gzFile);
+        rotatedFile.delete();
+        gzFile.setLastModified(System.currentTimeMillis() + 1000);
+
+        store = new CheckpointStore(storeFile);
+        config.setCheckpointStore(store);
+        listener = new CollectingListener();
+        runTailer(targetFile, listener, config);
+        store.close();
+
+        // delivered again rather than skipped
+        Assert.assertEquals(250, listener.size());
+        for (int i = 0; i < 250; i++) {
+            Assert.assertEquals(TestFiles.LINE + i, listener.get(i));
+        }
+
+        gzFile.delete();
+    }
+
+    /**
+     * A compressed sibling whose catch-up was interrupted is resumed from the
+     * checkpoint, even if the file isn't known to be compressed on rotation.
+     */
+    @Test
+    public void testCatchUpCompressedResumed() throws Exception {
+        File storeFile = TestFiles.newFile("checkpoints");
+        File targetFile = TestFiles.newFile("catchup_target");
+        File gzFile = TestFiles.newFile("catchup_target-20130101.gz");
+        File rotatedFile = TestFiles.newFile("catchup_target-20130101");
+        TestFiles.writeFile(targetFile, 0, 100);
+
+        CheckpointStore store = new CheckpointStore(storeFile);
+        TailerConfig config = new TailerConfig();
+        config.setCheckpointStore(store);
+        config.setCatchUpRotated(true);
+        CollectingListener listener = new CollectingListener();
+        runTailer(targetFile, listener, config);
+        store.close();
+        Assert.assertEquals(100, listener.size());
+
+        // rotated and compressed while the tailer is down, larger than a
+        // single read of the catch-up
+        int rotatedLines = 100000;
+        TestFiles.writeFile(targetFile, 100, rotatedLines);
+        targetFile.renameTo(rotatedFile);
+        TestFiles.writeFile(targetFile, 100 + rotatedLines, 50);
+        gzip(rotatedFile, gzFile);
+        rotatedFile.delete();
+        gzFile.setLastModified(System.currentTimeMillis() + 1000);
+
+        // stopped in the middle of the compressed sibling
+        store = new CheckpointStore(storeFile);
+        config.setCheckpointStore(store);
+        CollectingListener stopping = new CollectingListener() {
+            private Tailer tailer;
+
+            @Override
+            public void init(Tailer tailer) {
+                this.tailer = tailer;
+            }
+
+            @Override
+            public synchronized void handle(String line, long position, long lastModified) {
+                super.handle(line, position, lastModified);
+                tailer.stop();
+            }
+        };
+        runTailer(targetFile, stopping, config);
+        store.close();
+        Assert.assertTrue(stopping.size() > 0);
+        Assert.assertTrue(stopping.size() < rotatedLines);
+
+        store = new CheckpointStore(storeFile);
+        config.setCheckpointStore(store);
+        listener = new CollectingListener();
+        runTailer(targetFile, listener, config);
+        store.close();
+
+        // the compressed sibling is delivered from its start once
+        List<String> resultList = stopping.getResult();
+        resultList.addAll(listener.getResult());
+        Assert.assertEquals(100 + rotatedLines + 50, resultList.size());
+        for (int i = 0; i < 100 + rotatedLines + 50; i++) {
+            Assert.assertEquals(TestFiles.LINE + i, resultList.get(i));
+        }
+
+        gzFile.delete();
+    }
+}
@@ -0,0 +1,54 @@
+package com.netease.util.tailer.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.netease.util.tailer.Tailer;
+import com.netease.util.tailer.TailerListener;
+
+/**
+ * Listener collecting the lines it receives, shared by the test cases.
+ */
+class CollectingListener implements TailerListener {
+    private final List<String> resultList = new ArrayList<String>();
+    volatile boolean stopped = false;
+
+    @Override
+    public void init(Tailer tailer) {
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void fileNotFound() {
+    }
+
+    @Override
+    public void fileRotated() {
+    }
+
+    @Override
+    public synchronized void handle(String line, long position, long lastModified) {
+        resultList.add(line);
+    }
+
+    @Override
+    public void handle(Exception ex) {
+        ex.printStackTrace();
+    }
+
+    public synchronized int size() {
+        return resultList.size();
+    }
+
+    public synchronized String get(int index) {
+        return resultList.get(index);
+    }
+
+    public synchronized List<String> getResult() {
+        return new ArrayList<String>(resultList);
+    }
+}
@@ -0,0 +1,145 @@
+package com.netease.util.tailer.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netease.util.tailer.DirectoryTailer;
+import com.netease.util.tailer.TailerConfig;
+import com.netease.util.tailer.TailerListener;
+import com.netease.util.tailer.TailerListenerFactory;
+import com.netease.util.tailer.TailerManager;
+
+/**
+ * Test case for directory tailer.
+ */
+public class DirectoryTailerTest {
+    /**
+     * Collects the lines of all the listeners of a file, which gets a new
+     * listener each time it is followed again.
+     */
+    class Factory implements TailerListenerFactory {
+        private Map<String, List<CollectingListener>> listeners = new ConcurrentHashMap<String, List<CollectingListener>>();
+
+        @Override
+        public synchronized TailerListener create(File file) {
+            List<CollectingListener> list = listeners.get(file.getName());
+            if (list == null) {
+                list = new ArrayList<CollectingListener>();
+                listeners.put(file.getName(), list);
+            }
+            CollectingListener listener = new CollectingListener();
+            list.add(listener);
+            return listener;
+        }
+
+        public synchronized List<String> getResult(String name) {
+            List<String> resultList = new ArrayList<String>();
+            List<CollectingListener> list = listeners.get(name);
+            if (list != null) {
+                for (CollectingListener listener : list) {
+                    resultList.addAll(listener.getResult());
+                }
+            }
+            return resultList;
+        }
+    }
+
+    private void checkLines(List<String> resultList, int size) {
+        Assert.assertEquals(size, resultList.size());
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(TestFiles.LINE + i, resultList.get(i));
+        }
+    }
+
+    @Test
+    public void testDiscoverAndRetire() throws Exception {
+        File directory = new File("test_data/directory_target");
+        directory.mkdirs();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+
+        TestFiles.writeFile(new File(directory, "a.log"), 0, 100);
+        TestFiles.writeFile(new File(directory, "b.log"), 0, 100);
+        TestFiles.writeFile(new File(directory, "c.txt"), 0, 100);
+
+        Factory factory = new Factory();
+        TailerManager manager = new TailerManager(2);
+        DirectoryTailer tailer = new DirectoryTailer(directory, "*.log", factory, manager, new TailerConfig(), 1500);
+        tailer.start();
+
+        Thread.sleep(500);
+
+        Assert.assertEquals(2, tailer.size());
+        checkLines(factory.getResult("a.log"), 100);
+        checkLines(factory.getResult("b.log"), 100);
+        Assert.assertFalse(tailer.isFollowing("c.txt"));
+
+        // a new file is discovered
+        TestFiles.writeFile(new File(directory, "d.log"), 0, 100);
+        Thread.sleep(500);
+
+        Assert.assertTrue(tailer.isFollowing("d.log"));
+        checkLines(factory.getResult("d.log"), 100);
+
+        // the files are retired after the idle timeout
+        Thread.sleep(3000);
+        Assert.assertEquals(0, tailer.size());
+
+        // a retired file is followed again from where it stopped
+        TestFiles.writeFile(new File(directory, "a.log"), 100, 100);
+        Thread.sleep(1000);
+
+        Assert.assertTrue(tailer.isFollowing("a.log"));
+        checkLines(factory.getResult("a.log"), 200);
+
+        tailer.stop();
+        manager.shutdown();
+        Assert.assertTrue(manager.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A file changed right as it is retired is followed again from where the
+     * old tailer stopped, once, without duplicated lines.
+     */
+    @Test
+    public void testChangeWhileRetiring() throws Exception {
+        File directory = new File("test_data/directory_target");
+        directory.mkdirs();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+
+        File file = new File(directory, "a.log");
+        TestFiles.writeFile(file, 0, 100);
+
+        Factory factory = new Factory();
+        TailerManager manager = new TailerManager(2);
+        DirectoryTailer tailer = new DirectoryTailer(directory, "*.log", factory, manager, new TailerConfig(), 1000);
+        tailer.start();
+
+        Thread.sleep(500);
+        checkLines(factory.getResult("a.log"), 100);
+
+        long start = System.currentTimeMillis();
+        while (tailer.isFollowing("a.log") && System.currentTimeMillis() - start < 5000) {
+            Thread.sleep(1);
+        }
+        Assert.assertFalse(tailer.isFollowing("a.log"));
+        TestFiles.writeFile(file, 100, 100);
+
+        Thread.sleep(700);
+        checkLines(factory.getResult("a.log"), 200);
+
+        tailer.stop();
+        manager.shutdown();
+        Assert.assertTrue(manager.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
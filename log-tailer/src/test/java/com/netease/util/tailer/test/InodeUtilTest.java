@@ -1,6 +1,7 @@
 package com.netease.util.tailer.test;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
@@ -74,4 +75,26 @@ public class InodeUtilTest {
 
         System.out.println("inode=" + inode + ", time=" + (end - start));
     }
+
+    @Test
+    public void testStatAll() throws Exception {
+        String[] filePaths = { "/etc/hosts", "/etc/passwd", "/not/existing/file" };
+        byte[][] paths = new byte[filePaths.length][];
+        for (int i = 0; i < filePaths.length; i++) {
+            paths[i] = InodeUtil.encodePath(filePaths[i]);
+        }
+
+        long[] stats = new long[filePaths.length * InodeUtil.STAT_FIELDS];
+        Assert.assertEquals(2, InodeUtil.statAll(paths, stats));
+
+        for (int i = 0; i < 2; i++) {
+            File file = new File(filePaths[i]);
+            int base = i * InodeUtil.STAT_FIELDS;
+            Assert.assertEquals(getInodeByCmd(filePaths[i]), stats[base]);
+            Assert.assertEquals(file.length(), stats[base + 1]);
+            Assert.assertEquals(file.lastModified() / 1000, stats[base + 2] / 1000);
+        }
+        Assert.assertEquals(-1, stats[2 * InodeUtil.STAT_FIELDS]);
+        Assert.assertEquals(-1, stats[2 * InodeUtil.STAT_FIELDS + 1]);
+    }
 }
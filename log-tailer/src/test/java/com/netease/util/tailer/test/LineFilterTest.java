@@ -0,0 +1,58 @@
+package com.netease.util.tailer.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netease.util.tailer.LineFilter;
+
+/**
+ * Test case for line filter.
+ */
+public class LineFilterTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private boolean accept(LineFilter filter, String line) {
+        byte[] bytes = ("#" + line + "#").getBytes(UTF8);
+        boolean accepted = filter.accept(bytes, 1, bytes.length - 2);
+
+        // same result on a direct buffer
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.position(1);
+        direct.limit(bytes.length - 1);
+        Assert.assertEquals(accepted, filter.accept(direct));
+        Assert.assertEquals(1, direct.position());
+        return accepted;
+    }
+
+    @Test
+    public void testOverlappingKeywords() {
+        LineFilter filter = new LineFilter(new String[] { "he", "she", "his", "hers" }, new String[0], UTF8);
+        Assert.assertTrue(accept(filter, "ushers"));
+        Assert.assertTrue(accept(filter, "ahishers"));
+        Assert.assertTrue(accept(filter, "sshe"));
+        Assert.assertFalse(accept(filter, "shi"));
+        Assert.assertFalse(accept(filter, "h"));
+        Assert.assertFalse(accept(filter, ""));
+    }
+
+    @Test
+    public void testIncludeAndExclude() {
+        String heartbeat = "\u5fc3\u8df3";
+        LineFilter filter = new LineFilter(new String[] { "ERROR", "WARN" }, new String[] { "health", heartbeat },
+                UTF8);
+        Assert.assertTrue(accept(filter, "2013-01-01 ERROR failed"));
+        Assert.assertTrue(accept(filter, "2013-01-01 WARN slow"));
+        Assert.assertFalse(accept(filter, "2013-01-01 INFO started"));
+        Assert.assertFalse(accept(filter, "2013-01-01 ERROR health check failed"));
+        Assert.assertFalse(accept(filter, "2013-01-01 WARN 心跳"));
+
+        LineFilter excludeOnly = new LineFilter(new String[0], new String[] { "DEBUG" }, UTF8);
+        Assert.assertTrue(accept(excludeOnly, "INFO started"));
+        Assert.assertFalse(accept(excludeOnly, "DEBUG value=1"));
+        Assert.assertFalse(accept(excludeOnly, "DDEBUG"));
+    }
+}
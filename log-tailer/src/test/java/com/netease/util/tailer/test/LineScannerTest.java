@@ -0,0 +1,158 @@
+package com.netease.util.tailer.test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.netease.util.tailer.LineScanner;
+
+/**
+ * Test case for line scanner.
+ */
+public class LineScannerTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    class CollectHandler implements LineScanner.LineHandler {
+        private List<String> lines = new ArrayList<String>();
+        private List<Long> positions = new ArrayList<Long>();
+
+        @Override
+        public void handleLine(ByteBuffer line, long position) {
+            byte[] bytes = new byte[line.remaining()];
+            line.duplicate().get(bytes);
+            lines.add(new String(bytes, UTF8));
+            positions.add(position);
+        }
+    }
+
+    class CountHandler implements LineScanner.LineHandler {
+        private long count;
+        private long bytes;
+
+        @Override
+        public void handleLine(ByteBuffer line, long position) {
+            count++;
+            bytes += line.remaining();
+        }
+    }
+
+    private void scan(LineScanner scanner, String content, long position, LineScanner.LineHandler handler) {
+        scanner.scan(ByteBuffer.wrap(content.getBytes(UTF8)), position, handler);
+    }
+
+    @Test
+    public void testSplit() throws Exception {
+        LineScanner scanner = new LineScanner();
+        CollectHandler handler = new CollectHandler();
+
+        scan(scanner, "first\nsecond\r\n\nthi", 0, handler);
+        Assert.assertEquals(3, scanner.getPartialLength());
+        scan(scanner, "rd\nfour", 18, handler);
+        Assert.assertEquals(4, scanner.getPartialLength());
+
+        Assert.assertEquals(4, handler.lines.size());
+        Assert.assertEquals("first", handler.lines.get(0));
+        Assert.assertEquals("second", handler.lines.get(1));
+        Assert.assertEquals("", handler.lines.get(2));
+        Assert.assertEquals("third", handler.lines.get(3));
+
+        Assert.assertEquals(Long.valueOf(6), handler.positions.get(0));
+        Assert.assertEquals(Long.valueOf(14), handler.positions.get(1));
+        Assert.assertEquals(Long.valueOf(15), handler.positions.get(2));
+        Assert.assertEquals(Long.valueOf(21), handler.positions.get(3));
+
+        scanner.reset();
+        scan(scanner, "five\n", 0, handler);
+        Assert.assertEquals("five", handler.lines.get(4));
+        Assert.assertEquals(0, scanner.getPartialLength());
+    }
+
+    @Test
+    public void testLongPartialLine() throws Exception {
+        LineScanner scanner = new LineScanner();
+        CollectHandler handler = new CollectHandler();
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String chunk = "chunk" + i;
+            expected.append(chunk);
+            scan(scanner, chunk, expected.length() - chunk.length(), handler);
+        }
+        scan(scanner, "\r\n", expected.length(), handler);
+
+        Assert.assertEquals(1, handler.lines.size());
+        Assert.assertEquals(expected.toString(), handler.lines.get(0));
+        Assert.assertEquals(Long.valueOf(expected.length() + 2), handler.positions.get(0));
+    }
+
+    @Test
+    public void testDirectBuffer() throws Exception {
+        LineScanner scanner = new LineScanner();
+        CollectHandler handler = new CollectHandler();
+
+        byte[] content = "direct\nbuf".getBytes(UTF8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        buffer.put(content);
+        buffer.flip();
+        scanner.scan(buffer, 0, handler);
+        scan(scanner, "fer\n", content.length, handler);
+
+        Assert.assertEquals("direct", handler.lines.get(0));
+        Assert.assertEquals("buffer", handler.lines.get(1));
+    }
+
+    private long allocatedBytes(com.sun.management.ThreadMXBean bean) {
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * The scanner should allocate nothing per line once the partial line
+     * buffer has grown to the longest line.
+     */
+    @Test
+    public void testAllocationPerLine() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("2013-01-01 00:00:00 INFO access log line ").append(i).append('\n');
+        }
+        byte[] content = sb.toString().getBytes(UTF8);
+
+        LineScanner scanner = new LineScanner();
+        CountHandler handler = new CountHandler();
+        // split the content into buffers which don't end at a line boundary
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        int step = 1000;
+
+        int[] rounds = { 1000, 10000 };
+        double[] perLine = new double[rounds.length];
+        for (int r = 0; r < rounds.length; r++) {
+            long lines = handler.count;
+            long start = allocatedBytes(bean);
+            for (int i = 0; i < rounds[r]; i++) {
+                for (int off = 0; off < content.length; off += step) {
+                    buffer.clear();
+                    buffer.position(off);
+                    buffer.limit(Math.min(off + step, content.length));
+                    scanner.scan(buffer, 0, handler);
+                }
+            }
+            long end = allocatedBytes(bean);
+            perLine[r] = (double) (end - start) / (handler.count - lines);
+        }
+
+        Assert.assertTrue(handler.bytes > 0);
+        // nothing is allocated per line, only a constant amount for warm up
+        Assert.assertTrue("allocated per line: " + perLine[1], perLine[1] < 1.0);
+    }
+}
@@ -0,0 +1,230 @@
+package com.netease.util.tailer.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netease.util.tailer.CheckpointStore;
+import com.netease.util.tailer.Tailer;
+import com.netease.util.tailer.TailerConfig;
+import com.netease.util.tailer.TailerHelper;
+import com.netease.util.tailer.TailerManager;
+
+/**
+ * Test case for tailer manager.
+ */
+public class TailerManagerTest {
+    @Test
+    public void testManyFiles() throws Exception {
+        int fileCount = 50;
+        // small buffer and quantum to switch between the files often
+        TailerManager manager = new TailerManager(2, 64, 256);
+
+        List<File> files = new ArrayList<File>();
+        List<CollectingListener> listeners = new ArrayList<CollectingListener>();
+        for (int i = 0; i < fileCount; i++) {
+            File file = new File("test_data/manager_target" + i);
+            if (file.exists()) {
+                file.delete();
+            }
+            TestFiles.writeFile(file, 0, 1000);
+
+            CollectingListener listener = new CollectingListener();
+            manager.add(TailerHelper.createTailer(file, listener, 0));
+            files.add(file);
+            listeners.add(listener);
+        }
+
+        Thread.sleep(1000);
+
+        for (File file : files) {
+            TestFiles.writeFile(file, 1000, 100);
+        }
+
+        Thread.sleep(1000);
+
+        for (CollectingListener listener : listeners) {
+            List<String> resultList = listener.getResult();
+            Assert.assertEquals(1100, resultList.size());
+            for (int i = 0; i < 1100; i++) {
+                Assert.assertEquals(TestFiles.LINE + i, resultList.get(i));
+            }
+        }
+        Assert.assertEquals(fileCount, manager.size());
+
+        manager.shutdown();
+        Assert.assertTrue(manager.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, manager.size());
+        for (CollectingListener listener : listeners) {
+            Assert.assertTrue(listener.stopped);
+        }
+
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testShutdownIdle() throws Exception {
+        TailerManager manager = new TailerManager(1);
+        File file = new File("test_data/manager_target");
+        file.delete();
+        TestFiles.writeFile(file, 0, 10);
+
+        // the unchanged file is polled again only after a long delay
+        TailerConfig config = new TailerConfig();
+        config.setDelayMillis(5000);
+        CollectingListener listener = new CollectingListener();
+        manager.add(TailerHelper.createTailer(file, listener, 0, config));
+        Thread.sleep(500);
+        Assert.assertEquals(10, listener.getResult().size());
+
+        long start = System.currentTimeMillis();
+        manager.shutdown();
+        Assert.assertTrue(manager.awaitTermination(5, TimeUnit.SECONDS));
+        long elapsed = System.currentTimeMillis() - start;
+        Assert.assertTrue("terminated in " + elapsed, elapsed < 1000);
+        Assert.assertTrue(listener.stopped);
+        Assert.assertEquals(0, manager.size());
+        file.delete();
+    }
+
+    @Test
+    public void testBackfill() throws Exception {
+        TailerManager manager = new TailerManager(2);
+        int lines = 100000;
+        List<File> files = new ArrayList<File>();
+        List<CollectingListener> listeners = new ArrayList<CollectingListener>();
+        for (int i = 0; i < 2; i++) {
+            File file = TestFiles.newFile("manager_target" + i);
+            TestFiles.writeFile(file, 0, lines);
+            files.add(file);
+
+            // the chunks of both tailers are scanned by the pool of the manager
+            TailerConfig config = new TailerConfig();
+            config.setBackfillParallelism(2);
+            config.setBackfillChunkSize(16 * 1024);
+            CollectingListener listener = new CollectingListener();
+            listeners.add(listener);
+            manager.add(TailerHelper.createTailer(file, listener, 0, config));
+        }
+
+        Thread.sleep(1000);
+        for (File file : files) {
+            TestFiles.writeFile(file, lines, 100);
+        }
+        Thread.sleep(1000);
+        manager.shutdown();
+        Assert.assertTrue(manager.awaitTermination(5, TimeUnit.SECONDS));
+
+        for (CollectingListener listener : listeners) {
+            List<String> resultList = listener.getResult();
+            Assert.assertEquals(lines + 100, resultList.size());
+            for (int i = 0; i < lines + 100; i++) {
+                Assert.assertEquals(TestFiles.LINE + i, resultList.get(i));
+            }
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCatchUpBandwidth() throws Exception {
+        // lines of 10 bytes, 500KB behind, read at 200KB/s
+        int backlogLines = 50000;
+        TailerManager manager = new TailerManager(2, 4096, 4096, 200 * 1024);
+
+        File backlogFile = new File("test_data/manager_backlog");
+        File liveFile = new File("test_data/manager_live");
+        backlogFile.delete();
+        liveFile.delete();
+        TestFiles.writeFile(backlogFile, 100000, backlogLines);
+        TestFiles.writeFile(liveFile, 0, 1);
+
+        CollectingListener backlogListener = new CollectingListener();
+        CollectingListener liveListener = new CollectingListener();
+        manager.add(TailerHelper.createTailer(backlogFile, backlogListener, 0), 2);
+        manager.add(TailerHelper.createTailer(liveFile, liveListener, 0));
+
+        Thread.sleep(300);
+        Assert.assertTrue(manager.getLaggingBytes() > 0);
+        TestFiles.writeFile(liveFile, 1, 1);
+
+        // the live file isn't held back by the backlog
+        Thread.sleep(500);
+        Assert.assertEquals(2, liveListener.getResult().size());
+        int read = backlogListener.getResult().size();
+        Assert.assertTrue("read " + read, read > 0 && read < backlogLines);
+
+        for (int i = 0; i < 50 && backlogListener.getResult().size() < backlogLines; i++) {
+            Thread.sleep(100);
+        }
+        List<String> resultList = backlogListener.getResult();
+        Assert.assertEquals(backlogLines, resultList.size());
+        for (int i = 0; i < backlogLines; i++) {
+            Assert.assertEquals(TestFiles.LINE + (100000 + i), resultList.get(i));
+        }
+        Thread.sleep(100);
+        Assert.assertEquals(0, manager.getLaggingBytes());
+
+        manager.shutdown();
+        Assert.assertTrue(manager.awaitTermination(5, TimeUnit.SECONDS));
+        backlogFile.delete();
+        liveFile.delete();
+    }
+
+    /**
+     * A tailer catching up with rotated files counts their rest in its lag.
+     */
+    @Test
+    public void testCatchUpLag() throws Exception {
+        File storeFile = new File("test_data/manager_checkpoints");
+        File file = new File("test_data/manager_rotated");
+        File rotatedFile = new File("test_data/manager_rotated.1");
+        storeFile.delete();
+        file.delete();
+        rotatedFile.delete();
+        TestFiles.writeFile(file, 0, 10);
+
+        TailerManager manager = new TailerManager(1, 4096, 4096, 100 * 1024);
+        CheckpointStore store = new CheckpointStore(storeFile);
+        TailerConfig config = new TailerConfig();
+        config.setCheckpointStore(store);
+        config.setCatchUpRotated(true);
+        CollectingListener listener = new CollectingListener();
+        Tailer tailer = TailerHelper.createTailer(file, listener, 0, config);
+        manager.add(tailer);
+        Thread.sleep(300);
+        Assert.assertEquals(10, listener.getResult().size());
+        tailer.stop();
+        Thread.sleep(300);
+
+        // while the tailer is down, the file grows by 500KB and is rotated
+        TestFiles.writeFile(file, 10, 50000);
+        file.renameTo(rotatedFile);
+        TestFiles.writeFile(file, 0, 10);
+
+        listener = new CollectingListener();
+        tailer = TailerHelper.createTailer(file, listener, 0, config);
+        manager.add(tailer);
+        Thread.sleep(300);
+
+        // the rotated file is read at the limited bandwidth
+        Assert.assertTrue(tailer.getMetrics().getLagBytes() > 100 * 1024);
+        Assert.assertTrue(manager.getLaggingBytes() > 100 * 1024);
+        int read = listener.getResult().size();
+        Assert.assertTrue("read " + read, read < 50000);
+
+        manager.shutdown();
+        Assert.assertTrue(manager.awaitTermination(5, TimeUnit.SECONDS));
+        store.close();
+        storeFile.delete();
+        file.delete();
+        rotatedFile.delete();
+    }
+}
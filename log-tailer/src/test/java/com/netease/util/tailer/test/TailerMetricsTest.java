@@ -0,0 +1,69 @@
+package com.netease.util.tailer.test;
+
+import java.io.File;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netease.util.tailer.JmxMetricsRegistry;
+import com.netease.util.tailer.Tailer;
+import com.netease.util.tailer.TailerConfig;
+import com.netease.util.tailer.TailerHelper;
+import com.netease.util.tailer.TailerMetrics;
+
+/**
+ * Test case for tailer metrics.
+ */
+public class TailerMetricsTest {
+    @Test
+    public void testJmx() throws Exception {
+        File oldFile = new File("test_data/metrics_target.bak");
+        File targetFile = new File("test_data/metrics_target");
+        oldFile.delete();
+        targetFile.delete();
+
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        TailerConfig config = new TailerConfig();
+        config.setDelayMillis(20);
+        config.setMetricsRegistry(new JmxMetricsRegistry(server));
+        CollectingListener listener = new CollectingListener();
+        Tailer tailer = TailerHelper.createTailer(targetFile, listener, 0, config);
+        ObjectName name = JmxMetricsRegistry.getObjectName(targetFile.getAbsolutePath());
+        Assert.assertTrue(server.isRegistered(name));
+
+        Thread thread = new Thread(tailer);
+        thread.start();
+        Thread.sleep(200);
+        TestFiles.writeFile(targetFile, 0, 100);
+        long length = targetFile.length();
+        Thread.sleep(500);
+
+        Assert.assertEquals(100L, server.getAttribute(name, "LinesDelivered"));
+        Assert.assertEquals(length, server.getAttribute(name, "BytesRead"));
+        Assert.assertEquals(0L, server.getAttribute(name, "LagBytes"));
+        Assert.assertTrue((Long) server.getAttribute(name, "FileNotFoundCount") > 0);
+        long polls = (Long) server.getAttribute(name, "PollCount");
+        long emptyPolls = (Long) server.getAttribute(name, "EmptyPollCount");
+        Assert.assertTrue(polls > emptyPolls);
+        Assert.assertTrue(emptyPolls > 0);
+
+        // rotated
+        targetFile.renameTo(oldFile);
+        TestFiles.writeFile(targetFile, 0, 10);
+        Thread.sleep(500);
+
+        TailerMetrics metrics = tailer.getMetrics();
+        Assert.assertEquals(1, metrics.getRotationCount());
+        Assert.assertEquals(110, metrics.getLinesDelivered());
+        Assert.assertEquals(110, listener.size());
+        Assert.assertEquals(length + targetFile.length(), metrics.getBytesRead());
+
+        tailer.stop();
+        thread.join();
+        Assert.assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,1291 @@
+package com.netease.util.tailer.test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.netease.util.InotifyUtil;
+import com.netease.util.tailer.BatchTailerListener;
+import com.netease.util.tailer.ByteTailerListener;
+import com.netease.util.tailer.LineBatch;
+import com.netease.util.tailer.LineFilter;
+import com.netease.util.tailer.MultilineAggregator;
+import com.netease.util.tailer.PooledLine;
+import com.netease.util.tailer.PooledLineListener;
+import com.netease.util.tailer.RotationListener;
+import com.netease.util.tailer.Tailer;
+import com.netease.util.tailer.TailerConfig;
+import com.netease.util.tailer.TailerHelper;
+import com.netease.util.tailer.TailerListener;
+
+/**
+ * Test case for tailer class.
+ * 
+ * @author jiaozhihui@corp.netease.com
+ */
+public class TailerTest {
+    private static final String OLD_FILE_LINE = "old";
+    private static final String NEW_FILE_LINE = "new";
+
+    private void writeFile(BufferedWriter writer, int start, int size, String line) throws Exception {
+        for (int i = start; i < start + size; i++) {
+            writer.write(line + i);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    abstract class TestLisenter implements TailerListener {
+        @Override
+        public void init(Tailer tailer) {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void fileNotFound() {
+        }
+
+        @Override
+        public void handle(Exception ex) {
+        }
+    }
+
+    class Listener1 extends TestLisenter {
+        private List<String> resultList = new ArrayList<String>();
+
+        public List<String> getResult() {
+            return resultList;
+        }
+
+        @Override
+        public void handle(String line, long position, long lastModified) {
+            resultList.add(line);
+        }
+
+        @Override
+        public void fileRotated() {
+        }
+    }
+
+    /**
+     * Old file updated, and no new file created.
+     */
+    @Test
+    public void testOldUpdate() throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+        Assert.assertFalse(targetFile.exists());
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+
+        Listener1 taiListener = new Listener1();
+
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertEquals(100, resultList.size());
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(resultList.get(i).equals(OLD_FILE_LINE + i));
+        }
+
+        writeFile(writer, 100, 100, OLD_FILE_LINE);
+        writer.close();
+
+        Thread.sleep(1000);
+
+        resultList = taiListener.getResult();
+        Assert.assertEquals(200, resultList.size());
+
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(resultList.get(i).equals(OLD_FILE_LINE + i));
+        }
+
+        tailer.stop();
+        thread.join();
+    }
+
+    /**
+     * New file created, and old file doesn't change.
+     */
+    @Test
+    public void testOldAndNew() throws Exception {
+        File oldFile = new File("test_data/tailer_target.bak");
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+        if (oldFile.exists()) {
+            oldFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+        writer.close();
+
+        Listener1 taiListener = new Listener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        targetFile.renameTo(oldFile);
+        Assert.assertFalse(targetFile.exists());
+        targetFile.createNewFile();
+        Assert.assertTrue(targetFile.exists());
+
+        Thread.sleep(1000);
+
+        writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, NEW_FILE_LINE);
+        writer.close();
+
+        Thread.sleep(1000);
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertEquals(200, resultList.size());
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(resultList.get(i).equals(OLD_FILE_LINE + i));
+        }
+
+        for (int i = 100; i < 200; i++) {
+            Assert.assertTrue(resultList.get(i).equals(NEW_FILE_LINE + (i - 100)));
+        }
+
+        tailer.stop();
+        thread.join();
+    }
+
+    class Listener2 extends TestLisenter {
+        private List<String> resultList = new ArrayList<String>();
+        private boolean newFile = false;
+
+        private volatile boolean readDone = false;
+
+        public List<String> getResult() {
+            return resultList;
+        }
+
+        public boolean isNewFile() {
+            return newFile;
+        }
+
+        public boolean isReadDone() {
+            return readDone;
+        }
+
+        @Override
+        public void handle(String line, long position, long lastModified) {
+            resultList.add(line);
+
+            if (resultList.size() == 100) {
+                readDone = true;
+            }
+        }
+
+        @Override
+        public void fileRotated() {
+            newFile = true;
+        }
+    }
+
+    /**
+     * Old file updated, and new file created, and new file is smaller than old
+     * file.
+     */
+    @Test
+    public void testOldUpdateAndNew_SmallNewFile() throws Exception {
+        File oldFile = new File("test_data/tailer_target.bak");
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+        if (oldFile.exists()) {
+            oldFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+
+        Listener2 taiListener = new Listener2();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        while (!taiListener.isReadDone()) {
+            Thread.sleep(10);
+        }
+
+        /*
+         * old file has been read, pause the tailer, update old file, create the
+         * new file and write content to it
+         */
+        tailer.pause();
+
+        // update old file
+        writeFile(writer, 100, 100, OLD_FILE_LINE);
+        writer.close();
+
+        // rename the old file and create the new file
+        targetFile.renameTo(oldFile);
+        Assert.assertFalse(targetFile.exists());
+        targetFile.createNewFile();
+        Assert.assertTrue(targetFile.exists());
+
+        // write the new file
+        writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, NEW_FILE_LINE);
+        writer.close();
+
+        tailer.resume();
+
+        Thread.sleep(1000);
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertTrue(taiListener.isNewFile());
+        Assert.assertEquals(300, resultList.size());
+
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(resultList.get(i).equals(OLD_FILE_LINE + i));
+        }
+
+        for (int i = 200; i < 300; i++) {
+            Assert.assertTrue(resultList.get(i).equals(NEW_FILE_LINE + (i - 200)));
+        }
+
+        tailer.stop();
+        thread.join();
+    }
+
+    /**
+     * Old file updated, and new file created, and new file is bigger than old
+     * file.
+     */
+    @Test
+    public void testOldUpdateAndNew_BigNewFile() throws Exception {
+
+        File oldFile = new File("test_data/tailer_target.bak");
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+        if (oldFile.exists()) {
+            oldFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+
+        Listener2 taiListener = new Listener2();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        while (!taiListener.isReadDone()) {
+            Thread.sleep(10);
+        }
+
+        /*
+         * old file has been read, pause the tailer, update old file, create the
+         * new file and write content to it
+         */
+        tailer.pause();
+
+        // update old file
+        writeFile(writer, 100, 100, OLD_FILE_LINE);
+        writer.close();
+
+        // rename the old file and create the new file
+        targetFile.renameTo(oldFile);
+        Assert.assertFalse(targetFile.exists());
+        targetFile.createNewFile();
+        Assert.assertTrue(targetFile.exists());
+
+        // write the new file
+        writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 300, NEW_FILE_LINE);
+        writer.close();
+
+        tailer.resume();
+
+        Thread.sleep(1000);
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertTrue(taiListener.isNewFile());
+        Assert.assertEquals(500, resultList.size());
+
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(resultList.get(i).equals(OLD_FILE_LINE + i));
+        }
+
+        for (int i = 200; i < 500; i++) {
+            Assert.assertTrue(resultList.get(i).equals(NEW_FILE_LINE + (i - 200)));
+        }
+
+        tailer.stop();
+        thread.join();
+    }
+
+    /**
+     * Old file updated, and new file created, and new file is equal size with
+     * old file.
+     */
+    @Test
+    public void testOldUpdateAndNew_Equal() throws Exception {
+
+        File oldFile = new File("test_data/tailer_target.bak");
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+        if (oldFile.exists()) {
+            oldFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+
+        Listener2 taiListener = new Listener2();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        while (!taiListener.isReadDone()) {
+            Thread.sleep(10);
+        }
+
+        /*
+         * old file has been read, pause the tailer, update old file, create the
+         * new file and write content to it
+         */
+        tailer.pause();
+
+        // update old file
+        writeFile(writer, 100, 100, OLD_FILE_LINE);
+        writer.close();
+
+        // rename the old file and create the new file
+        targetFile.renameTo(oldFile);
+        Assert.assertFalse(targetFile.exists());
+        targetFile.createNewFile();
+        Assert.assertTrue(targetFile.exists());
+
+        // write the new file with the same size to old file
+        writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 200, NEW_FILE_LINE);
+
+        tailer.resume();
+
+        Thread.sleep(1000);
+
+        // new file is not read in this case
+        List<String> resultList = taiListener.getResult();
+        Assert.assertTrue(taiListener.isNewFile());
+        Assert.assertEquals(400, resultList.size());
+
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(resultList.get(i).equals(OLD_FILE_LINE + i));
+        }
+
+        for (int i = 200; i < 400; i++) {
+            Assert.assertTrue(resultList.get(i).equals(NEW_FILE_LINE + (i - 200)));
+        }
+
+        tailer.stop();
+        thread.join();
+    }
+
+    class ByteListener extends TestLisenter implements ByteTailerListener {
+        private List<String> resultList = new ArrayList<String>();
+        private volatile boolean decoded = false;
+
+        public List<String> getResult() {
+            return resultList;
+        }
+
+        @Override
+        public void handle(ByteBuffer line, long position, long lastModified) {
+            byte[] bytes = new byte[line.remaining()];
+            line.get(bytes);
+            resultList.add(new String(bytes));
+        }
+
+        @Override
+        public void handle(String line, long position, long lastModified) {
+            decoded = true;
+        }
+
+        @Override
+        public void fileRotated() {
+        }
+    }
+
+    /**
+     * Lines are passed as bytes to the byte listener.
+     */
+    @Test
+    public void testByteListener() throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+        writer.close();
+
+        ByteListener taiListener = new ByteListener();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertFalse(taiListener.decoded);
+        Assert.assertEquals(100, resultList.size());
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(resultList.get(i).equals(OLD_FILE_LINE + i));
+        }
+
+        tailer.stop();
+        thread.join();
+    }
+
+    class PooledListener extends TestLisenter implements PooledLineListener {
+        private List<PooledLine> kept = new ArrayList<PooledLine>();
+        private List<String> resultList = new ArrayList<String>();
+        private Set<PooledLine> instances = Collections.newSetFromMap(new IdentityHashMap<PooledLine, Boolean>());
+        private volatile boolean keep = true;
+
+        @Override
+        public void handle(PooledLine line) {
+            instances.add(line);
+            if (keep) {
+                kept.add(line);
+            } else {
+                resultList.add(line.toString(Charset.forName("UTF-8")));
+                line.recycle();
+            }
+        }
+
+        @Override
+        public void handle(String line, long position, long lastModified) {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public void fileRotated() {
+        }
+    }
+
+    /**
+     * Lines can be kept after the call, and are reused once recycled.
+     */
+    @Test
+    public void testPooledLines() throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+
+        PooledListener taiListener = new PooledListener();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        // the kept lines are intact
+        Assert.assertEquals(100, taiListener.kept.size());
+        Assert.assertEquals(100, taiListener.instances.size());
+        for (int i = 0; i < 100; i++) {
+            PooledLine line = taiListener.kept.get(i);
+            Assert.assertEquals(OLD_FILE_LINE + i, line.toString(Charset.forName("UTF-8")));
+            Assert.assertEquals(line.getLength(), (OLD_FILE_LINE + i).length());
+        }
+
+        // recycled lines are reused
+        taiListener.keep = false;
+        for (PooledLine line : taiListener.kept) {
+            line.recycle();
+        }
+        writeFile(writer, 100, 1000, OLD_FILE_LINE);
+        writer.close();
+
+        Thread.sleep(1000);
+
+        tailer.stop();
+        thread.join();
+
+        Assert.assertEquals(1000, taiListener.resultList.size());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(OLD_FILE_LINE + (100 + i), taiListener.resultList.get(i));
+        }
+        Assert.assertEquals(100, taiListener.instances.size());
+    }
+
+    class BatchListener extends TestLisenter implements BatchTailerListener {
+        private List<String> resultList = new ArrayList<String>();
+        private List<Integer> batchSizes = new ArrayList<Integer>();
+        private volatile long endPosition = -1;
+
+        public List<String> getResult() {
+            return resultList;
+        }
+
+        @Override
+        public void handle(LineBatch batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                resultList.add(batch.getLine(i));
+            }
+            batchSizes.add(batch.size());
+            endPosition = batch.getEndPosition();
+        }
+
+        @Override
+        public void handle(String line, long position, long lastModified) {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public void fileRotated() {
+        }
+    }
+
+    /**
+     * Lines are passed in batches no larger than the configured size.
+     */
+    @Test
+    public void testBatchListener() throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+
+        TailerConfig config = new TailerConfig();
+        config.setMaxBatchLines(30);
+        BatchListener taiListener = new BatchListener();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        writeFile(writer, 100, 100, OLD_FILE_LINE);
+        writer.close();
+
+        Thread.sleep(1000);
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertEquals(200, resultList.size());
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(resultList.get(i).equals(OLD_FILE_LINE + i));
+        }
+        for (int size : taiListener.batchSizes) {
+            Assert.assertTrue(size <= 30);
+        }
+        Assert.assertEquals(targetFile.length(), taiListener.endPosition);
+
+        tailer.stop();
+        thread.join();
+    }
+
+    /**
+     * File counting the stat calls for the last modified time.
+     */
+    class CountingFile extends File {
+        private static final long serialVersionUID = 1L;
+
+        private AtomicLong lastModifiedCalls = new AtomicLong();
+
+        public CountingFile(String pathname) {
+            super(pathname);
+        }
+
+        @Override
+        public long lastModified() {
+            lastModifiedCalls.incrementAndGet();
+            return super.lastModified();
+        }
+    }
+
+    /**
+     * The last modified time is probed once per read cycle, not once per line
+     * as before.
+     */
+    @Test
+    public void testLastModifiedPerLine() throws Exception {
+        CountingFile targetFile = new CountingFile("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        int lines = 10000;
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        for (int i = 0; i < lines; i++) {
+            writer.write(OLD_FILE_LINE + i);
+            writer.newLine();
+        }
+        writer.close();
+
+        Listener1 taiListener = new Listener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0);
+        Thread thread = new Thread(tailer);
+
+        long start = System.currentTimeMillis();
+        thread.start();
+        while (taiListener.getResult().size() < lines && System.currentTimeMillis() - start < 5000) {
+            Thread.sleep(10);
+        }
+        tailer.stop();
+        thread.join();
+
+        long calls = targetFile.lastModifiedCalls.get();
+        Assert.assertEquals(lines, taiListener.getResult().size());
+        // as many calls as lines when probed per line
+        Assert.assertTrue("lastModified calls: " + calls, calls <= 1);
+    }
+
+    /**
+     * Lines are read through small mapped windows, crossing window
+     * boundaries.
+     */
+    @Test
+    public void testMappedReadMode() throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 1000, OLD_FILE_LINE);
+
+        TailerConfig config = new TailerConfig();
+        config.setReadMode(TailerConfig.ReadMode.MAPPED);
+        config.setMapWindowSize(1000);
+        config.setBufSize(64);
+        Listener1 taiListener = new Listener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        writeFile(writer, 1000, 1000, OLD_FILE_LINE);
+        writer.close();
+
+        Thread.sleep(1000);
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertEquals(2000, resultList.size());
+        for (int i = 0; i < 2000; i++) {
+            Assert.assertTrue(resultList.get(i).equals(OLD_FILE_LINE + i));
+        }
+
+        tailer.stop();
+        thread.join();
+    }
+
+    /**
+     * The old file is read to its end and the new one from its start when the
+     * file is probed by the native library.
+     */
+    @Test
+    public void testNativeProbe() throws Exception {
+        File oldFile = new File("test_data/tailer_target.bak");
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+        if (oldFile.exists()) {
+            oldFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+
+        TailerConfig config = new TailerConfig();
+        config.setNativeProbe(true);
+        Listener1 taiListener = new Listener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(500);
+
+        // old file updated after it is rotated
+        targetFile.renameTo(oldFile);
+        writeFile(writer, 100, 100, OLD_FILE_LINE);
+        writer.close();
+        writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, NEW_FILE_LINE);
+        writer.close();
+
+        Thread.sleep(1000);
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertEquals(300, resultList.size());
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(resultList.get(i).equals(OLD_FILE_LINE + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(resultList.get(200 + i).equals(NEW_FILE_LINE + i));
+        }
+
+        tailer.stop();
+        thread.join();
+    }
+
+    class RotationListener1 extends Listener1 implements RotationListener {
+        @Override
+        public void fileRotated() {
+            getResult().add("[rotated]");
+        }
+
+        @Override
+        public void beginRotatedLines() {
+            getResult().add("[begin]");
+        }
+
+        @Override
+        public void endRotatedLines() {
+            getResult().add("[end]");
+        }
+
+        @Override
+        public void rotatedFileClosed(long position) {
+            getResult().add("[closed]");
+        }
+    }
+
+    /**
+     * Lines written to the old file after the new file is opened are still
+     * delivered, marked as lines of the rotated file.
+     */
+    @Test
+    public void testRotatedFileDrain() throws Exception {
+        File oldFile = new File("test_data/tailer_target.bak");
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+        if (oldFile.exists()) {
+            oldFile.delete();
+        }
+
+        BufferedWriter oldWriter = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(oldWriter, 0, 100, OLD_FILE_LINE);
+
+        TailerConfig config = new TailerConfig();
+        config.setDrainQuietMillis(1000);
+        RotationListener1 taiListener = new RotationListener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(500);
+
+        targetFile.renameTo(oldFile);
+        BufferedWriter newWriter = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(newWriter, 0, 100, NEW_FILE_LINE);
+
+        Thread.sleep(500);
+
+        // late lines of the old file
+        writeFile(oldWriter, 100, 50, OLD_FILE_LINE);
+        oldWriter.close();
+        writeFile(newWriter, 100, 50, NEW_FILE_LINE);
+        newWriter.close();
+
+        Thread.sleep(2000);
+
+        tailer.stop();
+        thread.join();
+
+        List<String> resultList = taiListener.getResult();
+        List<String> oldLines = new ArrayList<String>();
+        List<String> newLines = new ArrayList<String>();
+        boolean rotated = false;
+        boolean inRotated = false;
+        for (String line : resultList) {
+            if (line.equals("[rotated]")) {
+                rotated = true;
+            } else if (line.equals("[begin]")) {
+                inRotated = true;
+            } else if (line.equals("[end]")) {
+                inRotated = false;
+            } else if (line.startsWith(OLD_FILE_LINE)) {
+                Assert.assertTrue(!rotated || inRotated);
+                oldLines.add(line);
+            } else if (line.startsWith(NEW_FILE_LINE)) {
+                Assert.assertTrue(rotated && !inRotated);
+                newLines.add(line);
+            }
+        }
+
+        Assert.assertEquals(150, oldLines.size());
+        for (int i = 0; i < 150; i++) {
+            Assert.assertEquals(OLD_FILE_LINE + i, oldLines.get(i));
+        }
+        Assert.assertEquals(150, newLines.size());
+        for (int i = 0; i < 150; i++) {
+            Assert.assertEquals(NEW_FILE_LINE + i, newLines.get(i));
+        }
+        Assert.assertEquals("[closed]", resultList.get(resultList.size() - 1));
+    }
+
+    /**
+     * The existing content is scanned in parallel, then the file is followed
+     * sequentially.
+     */
+    @Test
+    public void testParallelBackfill() throws Exception {
+        checkParallelBackfill(true);
+        checkParallelBackfill(false);
+    }
+
+    private void checkParallelBackfill(boolean ordered) throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        int lines = 100000;
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true), 64 * 1024);
+        for (int i = 0; i < lines; i++) {
+            writer.write(OLD_FILE_LINE + i);
+            writer.newLine();
+        }
+        // the last line is completed after the backfill
+        writer.write(OLD_FILE_LINE);
+        writer.flush();
+
+        TailerConfig config = new TailerConfig();
+        config.setBackfillParallelism(4);
+        config.setBackfillChunkSize(16 * 1024);
+        config.setBackfillOrdered(ordered);
+        Listener1 taiListener = new Listener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        writer.write(String.valueOf(lines));
+        writer.newLine();
+        writeFile(writer, lines + 1, 99, OLD_FILE_LINE);
+        writer.close();
+
+        Thread.sleep(1000);
+
+        tailer.stop();
+        thread.join();
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertEquals(lines + 100, resultList.size());
+        if (ordered) {
+            for (int i = 0; i < lines + 100; i++) {
+                Assert.assertEquals(OLD_FILE_LINE + i, resultList.get(i));
+            }
+        } else {
+            boolean[] seen = new boolean[lines + 100];
+            for (String line : resultList) {
+                seen[Integer.parseInt(line.substring(OLD_FILE_LINE.length()))] = true;
+            }
+            for (int i = 0; i < lines + 100; i++) {
+                Assert.assertTrue(seen[i]);
+            }
+            for (int i = lines; i < lines + 100; i++) {
+                Assert.assertEquals(OLD_FILE_LINE + i, resultList.get(i));
+            }
+        }
+    }
+
+    private long waitForLines(Listener1 listener, int lines, long timeoutMillis) throws Exception {
+        long start = System.currentTimeMillis();
+        while (listener.getResult().size() < lines && System.currentTimeMillis() - start < timeoutMillis) {
+            Thread.sleep(1);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Changes are noticed through inotify events long before the safety poll.
+     */
+    @Test
+    public void testInotify() throws Exception {
+        Assume.assumeTrue(InotifyUtil.isAvailable());
+        checkChangeDetection(TailerConfig.ChangeDetection.INOTIFY);
+    }
+
+    /**
+     * A tailer waiting for inotify events returns as soon as it is stopped.
+     */
+    @Test
+    public void testInotifyStop() throws Exception {
+        Assume.assumeTrue(InotifyUtil.isAvailable());
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        TailerConfig config = new TailerConfig();
+        config.setChangeDetection(TailerConfig.ChangeDetection.INOTIFY);
+        config.setSafetyPollMillis(10000);
+        Tailer tailer = TailerHelper.createTailer(targetFile, new Listener1(), 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(500);
+        long start = System.currentTimeMillis();
+        tailer.stop();
+        thread.join(5000);
+        long elapsed = System.currentTimeMillis() - start;
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertTrue("stopped in " + elapsed, elapsed < 1000);
+    }
+
+    /**
+     * Changes are noticed through watch service events long before the safety
+     * poll.
+     */
+    @Test
+    public void testWatchService() throws Exception {
+        checkChangeDetection(TailerConfig.ChangeDetection.WATCH_SERVICE);
+    }
+
+    private void checkChangeDetection(TailerConfig.ChangeDetection detection) throws Exception {
+        File oldFile = new File("test_data/tailer_target.bak");
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+        if (oldFile.exists()) {
+            oldFile.delete();
+        }
+
+        TailerConfig config = new TailerConfig();
+        config.setChangeDetection(detection);
+        config.setSafetyPollMillis(3000);
+        Listener1 taiListener = new Listener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(500);
+
+        // the file is created
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+        long latency = waitForLines(taiListener, 100, 2000);
+        Assert.assertEquals(100, taiListener.getResult().size());
+        Assert.assertTrue(detection + " latency after creation: " + latency, latency < 2000);
+
+        // the file is appended
+        writeFile(writer, 100, 1, OLD_FILE_LINE);
+        writer.close();
+        latency = waitForLines(taiListener, 101, 2000);
+        Assert.assertEquals(101, taiListener.getResult().size());
+        Assert.assertTrue(detection + " latency after append: " + latency, latency < 2000);
+
+        // the file is rotated
+        targetFile.renameTo(oldFile);
+        writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, NEW_FILE_LINE);
+        writer.close();
+        latency = waitForLines(taiListener, 201, 2000);
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertEquals(201, resultList.size());
+        Assert.assertTrue(detection + " latency after rotation: " + latency, latency < 2000);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(resultList.get(101 + i).equals(NEW_FILE_LINE + i));
+        }
+
+        tailer.stop();
+        thread.join();
+    }
+
+    /**
+     * An unchanged file is polled less and less often.
+     */
+    @Test
+    public void testAdaptiveBackoff() throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+
+        TailerConfig config = new TailerConfig();
+        config.setDelayMillis(10);
+        config.setMaxDelayMillis(320);
+        Listener1 taiListener = new Listener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(2000);
+
+        // 200 polls without backoff
+        long polls = tailer.getPollCount();
+        Assert.assertTrue("polls: " + polls, polls < 30);
+        Assert.assertEquals(1, tailer.getDataPollCount());
+
+        writeFile(writer, 100, 100, OLD_FILE_LINE);
+        writer.close();
+
+        Thread.sleep(1000);
+
+        Assert.assertEquals(200, taiListener.getResult().size());
+        Assert.assertTrue(tailer.getDataPollCount() >= 2);
+
+        tailer.stop();
+        thread.join();
+    }
+
+    /**
+     * A missing file is polled at the minimum delay, so it is read soon after
+     * it is created.
+     */
+    @Test
+    public void testNoBackoffWhileMissing() throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        TailerConfig config = new TailerConfig();
+        config.setDelayMillis(10);
+        config.setMaxDelayMillis(10000);
+        Listener1 taiListener = new Listener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(2000);
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writeFile(writer, 0, 100, OLD_FILE_LINE);
+        writer.close();
+
+        long latency = waitForLines(taiListener, 100, 2000);
+        Assert.assertEquals(100, taiListener.getResult().size());
+        Assert.assertTrue("latency after creation: " + latency, latency < 500);
+
+        tailer.stop();
+        thread.join();
+    }
+
+    /**
+     * Lines of a file in a charset other than UTF-8, mixing ASCII lines and
+     * lines of Chinese characters.
+     */
+    @Test
+    public void testCharset() throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        Charset gbk = Charset.forName("GBK");
+        String chinese = "\u65e5\u5fd7";
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(targetFile), gbk));
+        for (int i = 0; i < 100; i++) {
+            writer.write((i % 2 == 0 ? OLD_FILE_LINE : chinese) + i);
+            writer.newLine();
+        }
+        writer.close();
+
+        Listener1 taiListener = new Listener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, gbk);
+        Assert.assertEquals(gbk, tailer.getCharset());
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        tailer.stop();
+        thread.join();
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertEquals(100, resultList.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals((i % 2 == 0 ? OLD_FILE_LINE : chinese) + i, resultList.get(i));
+        }
+    }
+
+    class RecordListener extends Listener1 {
+        private List<Long> positionList = new ArrayList<Long>();
+
+        @Override
+        public void handle(String line, long position, long lastModified) {
+            super.handle(line, position, lastModified);
+            positionList.add(position);
+        }
+    }
+
+    /**
+     * Lines grouped into records, the last one passed on after the flush
+     * time.
+     */
+    @Test
+    public void testMultiline() throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        String record = OLD_FILE_LINE + "%d\n\tat frame1\n\tat frame2";
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        for (int i = 0; i < 10; i++) {
+            writer.write(String.format(record, i));
+            writer.newLine();
+        }
+        writer.close();
+
+        TailerConfig config = new TailerConfig();
+        config.setRecordStart(MultilineAggregator.prefix(OLD_FILE_LINE.getBytes("UTF-8")));
+        config.setRecordFlushMillis(300);
+        RecordListener taiListener = new RecordListener();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        tailer.stop();
+        thread.join();
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertEquals(10, resultList.size());
+        long end = 0;
+        for (int i = 0; i < 10; i++) {
+            String expected = String.format(record, i);
+            Assert.assertEquals(expected, resultList.get(i));
+            end += expected.length() + 1;
+            Assert.assertEquals(end, taiListener.positionList.get(i).longValue());
+        }
+        Assert.assertEquals(targetFile.length(), tailer.getPosition());
+    }
+
+    /**
+     * The position of a stopped tailer is the start of the pending record.
+     */
+    @Test
+    public void testMultilinePending() throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        writer.write("first\n\tat frame1\nsecond\n\tat frame1\n");
+        writer.close();
+
+        TailerConfig config = new TailerConfig();
+        config.setRecordStart(MultilineAggregator.notIndented());
+        config.setRecordFlushMillis(60000);
+        RecordListener taiListener = new RecordListener();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(500);
+
+        tailer.stop();
+        thread.join();
+
+        Assert.assertEquals(1, taiListener.getResult().size());
+        Assert.assertEquals("first\n\tat frame1", taiListener.getResult().get(0));
+        Assert.assertEquals("first\n\tat frame1\n".length(), tailer.getPosition());
+    }
+
+    /**
+     * Lines dropped before they are decoded, and counted, by the tailer and
+     * by the backfill.
+     */
+    @Test
+    public void testLineFilter() throws Exception {
+        checkLineFilter(0);
+        checkLineFilter(2);
+    }
+
+    private void checkLineFilter(int backfillParallelism) throws Exception {
+        File targetFile = new File("test_data/tailer_target");
+        if (targetFile.exists()) {
+            targetFile.delete();
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(targetFile, true));
+        for (int i = 0; i < 100; i++) {
+            writer.write((i % 5 == 0 ? "INFO " : "DEBUG ") + OLD_FILE_LINE + i);
+            writer.newLine();
+        }
+        writer.close();
+
+        TailerConfig config = new TailerConfig();
+        config.setLineFilter(new LineFilter(new String[0], new String[] { "DEBUG" }, Charset.forName("UTF-8")));
+        config.setBackfillParallelism(backfillParallelism);
+        config.setBackfillChunkSize(256);
+        Listener1 taiListener = new Listener1();
+        Tailer tailer = TailerHelper.createTailer(targetFile, taiListener, 0, config);
+        Thread thread = new Thread(tailer);
+        thread.start();
+
+        Thread.sleep(1000);
+
+        tailer.stop();
+        thread.join();
+
+        List<String> resultList = taiListener.getResult();
+        Assert.assertEquals(20, resultList.size());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals("INFO " + OLD_FILE_LINE + (i * 5), resultList.get(i));
+        }
+        Assert.assertEquals(20, tailer.getPassedLineCount());
+        Assert.assertEquals(80, tailer.getFilteredLineCount());
+        Assert.assertEquals(targetFile.length(), tailer.getPosition());
+    }
+}
@@ -0,0 +1,37 @@
+package com.netease.util.tailer.test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Helpers writing the numbered test lines, shared by the test cases.
+ */
+final class TestFiles {
+    static final String LINE = "line";
+
+    private TestFiles() {
+    }
+
+    /**
+     * Returns the file under test_data, deleting what a previous run left.
+     */
+    static File newFile(String name) {
+        File file = new File("test_data/" + name);
+        file.delete();
+        return file;
+    }
+
+    /**
+     * Appends lines LINE + start up to LINE + (start + size - 1) to the file.
+     */
+    static void writeFile(File file, int start, int size) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file, true));
+        for (int i = start; i < start + size; i++) {
+            writer.write(LINE + i);
+            writer.newLine();
+        }
+        writer.close();
+    }
+}